@@ -26,14 +26,21 @@ import com.google.common.collect.ImmutableList;
 abstract class AbstractElement implements ImmutableElement
 {
     @Nonnull private final String name;
+    @Nonnull private final NodeKind kind;
     @Nonnull private final Selector selector;
+    /** 0 until computed */
+    private volatile long structuralHash = 0;
+    /** true once the node has been offered to a {@link NodeTable} */
+    private volatile boolean shared = false;
 
     AbstractElement(
             @Nonnull final String name,
+            @Nonnull final NodeKind kind,
             @Nonnull final Selector selector)
     {
         super();
         this.name = name;
+        this.kind = kind;
         this.selector = selector;
     }
 
@@ -43,6 +50,37 @@ abstract class AbstractElement implements ImmutableElement
         return name;
     }
 
+    @Override
+    public final NodeKind kind()
+    {
+        return kind;
+    }
+
+    @Override
+    public final long structuralHash()
+    {
+        long hash = structuralHash;
+        if(hash == 0)
+        {
+            hash = ImmutableElements.computeStructuralHash(this);
+            structuralHash = hash;
+        }
+        return hash;
+    }
+
+    final void markShared()
+    {
+        this.shared = true;
+    }
+
+    /**
+     * @return true if the node may be referenced from many parents
+     */
+    final boolean isShared()
+    {
+        return this.shared;
+    }
+
     @Override
     @Nonnull
     public ImmutableList<ImmutableElement> children()
@@ -50,6 +88,13 @@ abstract class AbstractElement implements ImmutableElement
         return ImmutableList.of();
     }
 
+    @Override
+    @Nonnull
+    public ImmutableList<ImmutableElement> children(@Nonnull final String name)
+    {
+        return ImmutableList.of();
+    }
+
     @Override
     @Nonnull
     public ImmutableElement child(final String name)
@@ -78,6 +123,13 @@ abstract class AbstractElement implements ImmutableElement
         return selector.createDelete(this);
     }
 
+    @Override
+    @Nonnull
+    public DSL.Transaction transaction()
+    {
+        return selector.createTransaction(this);
+    }
+
     @Override
     public DSL.Select select()
     {
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2013 Christof Lemke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xml.entity.immutableelement;
+
+import javax.annotation.Nonnull;
+
+import xml.entity.select.Selector;
+import xml.entity.select.dsl.DSL;
+import xml.entity.select.dsl.DSL.Join;
+
+/**
+ * Base class of {@link ImmutableElement}s that are views of nodes stored
+ * elsewhere, the views are created on access. The structural hash is kept in
+ * the view, subclasses that create several views of the same node override
+ * {@link #cachedStructuralHash()} and {@link #cacheStructuralHash(long)} to keep
+ * it with the node.
+ */
+public abstract class AbstractElementView implements ImmutableElement
+{
+    /** 0 until computed */
+    private volatile long structuralHash = 0;
+
+    /**
+     * @return The selector the DSL statements are created by
+     */
+    @Nonnull
+    protected abstract Selector selector();
+
+    /**
+     * @return The structural hash, or 0 if it has not been computed
+     */
+    protected long cachedStructuralHash()
+    {
+        return this.structuralHash;
+    }
+
+    protected void cacheStructuralHash(final long hash)
+    {
+        this.structuralHash = hash;
+    }
+
+    @Override
+    public final long structuralHash()
+    {
+        long hash = cachedStructuralHash();
+        if(hash == 0)
+        {
+            hash = ImmutableElements.computeStructuralHash(this);
+            cacheStructuralHash(hash);
+        }
+        return hash;
+    }
+
+    @Override
+    @Nonnull
+    public final DSL.Select select()
+    {
+        return selector().createSelect(this);
+    }
+
+    @Override
+    @Nonnull
+    public final DSL.Insert insert()
+    {
+        return selector().createInsert(this);
+    }
+
+    @Override
+    @Nonnull
+    public final DSL.Update update()
+    {
+        return selector().createUpdate(this);
+    }
+
+    @Override
+    @Nonnull
+    public final DSL.Delete delete()
+    {
+        return selector().createDelete(this);
+    }
+
+    @Override
+    @Nonnull
+    public final DSL.Transaction transaction()
+    {
+        return selector().createTransaction(this);
+    }
+
+    @Override
+    public Join join()
+    {
+        return null;
+    }
+}
@@ -25,9 +25,13 @@ class Attribute extends AbstractElement implements ImmutableElement
 {
     private final String value;
 
+    /**
+     * @param name
+     *            The attribute name including the '@' prefix
+     */
     Attribute(final String name, final String value, final Selector selector)
     {
-        super("@" + name, selector);
+        super(name, NodeKind.ATTRIBUTE, selector);
         Preconditions.checkNotNull(value);
         this.value = value;
     }
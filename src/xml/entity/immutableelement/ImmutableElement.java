@@ -39,6 +39,26 @@ public interface ImmutableElement
     @Nonnull
     String name();
 
+    /**
+     * Get the kind of the node. Prefer this over testing the name.
+     * 
+     * @return The node kind
+     */
+    @Nonnull
+    NodeKind kind();
+
+    /**
+     * A hash of the kind, name, value and children of this node and all
+     * descendants. Structurally equal nodes have equal hashes, see
+     * {@link ImmutableElements#structurallyEqual(ImmutableElement, ImmutableElement)}
+     * . Implementations compute it with
+     * {@link ImmutableElements#computeStructuralHash(ImmutableElement)} once
+     * and keep it.
+     * 
+     * @return The structural hash
+     */
+    long structuralHash();
+
     /**
      * In case of an attribute it will be the attribute value. In case of an
      * text node it will be the text content. Otherwise it will be null.
@@ -57,6 +77,18 @@ public interface ImmutableElement
     @Nonnull
     ImmutableList<ImmutableElement> children();
 
+    /**
+     * The children with the given name, in document order. Wide nodes index
+     * their children by name, so this is faster than filtering
+     * {@link #children()}.
+     * 
+     * @param name
+     *            The name, starting with '@' for attributes
+     * @return A list of child nodes
+     */
+    @Nonnull
+    ImmutableList<ImmutableElement> children(@Nonnull String name);
+
     /**
      * Returns the single child contained in {@code XmlElement} with {@code name}
      * 
@@ -106,6 +138,16 @@ public interface ImmutableElement
     @Nonnull
     DSL.Delete delete();
 
+    /**
+     * Apply several statements to this node at once. This operation will never
+     * modify this node, instead the result is retrieved by calling .element()
+     * when completing the operation.
+     * 
+     * @return An empty transaction
+     */
+    @Nonnull
+    DSL.Transaction transaction();
+
     /**
      * Not implemented yet
      * 
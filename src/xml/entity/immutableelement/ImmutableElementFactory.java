@@ -16,6 +16,7 @@
 package xml.entity.immutableelement;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 
 import xml.entity.select.DefaultSelector;
@@ -27,16 +28,27 @@ import com.google.common.collect.ImmutableList;
 @Immutable
 public class ImmutableElementFactory
 {
+    /**
+     * The number of distinct element and attribute names each factory keeps
+     * canonical instances of.
+     */
+    public static final int MAX_SYMBOLS = 4096;
+
     private final Selector selector;
+    private final SymbolTable symbols = new SymbolTable(MAX_SYMBOLS);
+    /** null if nodes are not shared */
+    @Nullable private final NodeTable nodes;
 
     public ImmutableElementFactory(@Nonnull final Selector selector)
     {
         this.selector = selector;
+        this.nodes = null;
     }
 
-    private ImmutableElementFactory()
+    private ImmutableElementFactory(@Nullable final NodeTable nodes)
     {
         this.selector = new DefaultSelector(PathParser.create(), this);
+        this.nodes = nodes;
     }
 
     /**
@@ -46,11 +58,29 @@ public class ImmutableElementFactory
      */
     public static ImmutableElementFactory create()
 	{
-        return new ImmutableElementFactory();
+        return new ImmutableElementFactory((NodeTable) null);
     }
 
     /**
-     * Create an internal node.
+     * Create a factory that returns the same instance for structurally equal
+     * text, attributes and small elements. An element is shared if it has at
+     * most 8 children which are shared themselves, so nodes built bottom up by
+     * the parsers and the DSL are shared up to the first large element.
+     * Identical fragments of a document then occupy memory only once.
+     * 
+     * @param maxNodes
+     *            The number of canonical nodes to keep, the least recently used
+     *            nodes are dropped from the table once it is full
+     * @return A new factory
+     */
+    public static ImmutableElementFactory createInterning(final long maxNodes)
+    {
+        return new ImmutableElementFactory(new NodeTable(maxNodes));
+    }
+
+    /**
+     * Create an internal node. The factory keeps one instance per name, so
+     * nodes created with equal names share the same name instance.
      * 
      * @param name
      *            The element name.
@@ -62,7 +92,7 @@ public class ImmutableElementFactory
             @Nonnull final String name,
             @Nonnull final ImmutableList<ImmutableElement> children)
 	{
-        return new InternalElement(name, children, this.selector);
+        return intern(new InternalElement(this.symbols.elementName(name), children, this.selector));
 	}
 
     /**
@@ -78,7 +108,7 @@ public class ImmutableElementFactory
             @Nonnull final String name,
             @Nonnull final String value)
 	{
-        return new Attribute(name, value, this.selector);
+        return intern(new Attribute(this.symbols.attributeName(name), value, this.selector));
 	}
 
     /**
@@ -90,7 +120,7 @@ public class ImmutableElementFactory
      */
     public ImmutableElement createText(@Nonnull final String value)
 	{
-        return new Text(value, this.selector);
+        return intern(new Text(value, this.selector));
 	}
 
     /**
@@ -103,6 +133,11 @@ public class ImmutableElementFactory
     public ImmutableElement createLeaf(@Nonnull final String name)
     {
         final ImmutableList<ImmutableElement> of = ImmutableList.of();
-        return new InternalElement(name, of, this.selector);
+        return intern(new InternalElement(this.symbols.elementName(name), of, this.selector));
+    }
+
+    private ImmutableElement intern(final AbstractElement node)
+    {
+        return this.nodes == null ? node : this.nodes.intern(node);
     }
 }
@@ -15,18 +15,17 @@
  */
 package xml.entity.immutableelement;
 
-import static com.google.common.base.Predicates.and;
-import static com.google.common.base.Predicates.not;
-
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 import xml.entity.select.dsl.NodeSelection;
 
+import com.google.common.base.Equivalence;
 import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 
 /**
@@ -104,7 +103,7 @@ public abstract class ImmutableElements
         @Override
         public boolean apply(@Nonnull final ImmutableElement e)
         {
-            return e.name().startsWith("@");
+            return e.kind() == NodeKind.ATTRIBUTE;
         }
     };
 
@@ -123,7 +122,7 @@ public abstract class ImmutableElements
         @Override
         public boolean apply(@Nonnull final ImmutableElement e)
         {
-            return e.name().startsWith("#");
+            return e.kind() == NodeKind.TEXT;
         }
     };
 
@@ -147,6 +146,10 @@ public abstract class ImmutableElements
      */
     public static Predicate<ImmutableElement> hasChild(final Predicate<ImmutableElement> matching)
     {
+        if(matching instanceof AttrPredicate)
+        {
+            return hasChild(((AttrPredicate) matching).name, matching);
+        }
         return new Predicate<ImmutableElement>() {
 
             @Override
@@ -163,6 +166,35 @@ public abstract class ImmutableElements
         };
     }
 
+    /**
+     * Test if this node has a child with the given name matching the given
+     * predicate. Only the children with that name are tested.
+     * 
+     * @param name
+     *            The name of the child, starting with '@' for attributes
+     * @param matching
+     *            This predicate will be applied to the children with the name
+     * @return true if any child with the name matches the given predicate.
+     */
+    public static Predicate<ImmutableElement> hasChild(@Nonnull final String name, final Predicate<ImmutableElement> matching)
+    {
+        Preconditions.checkNotNull(name);
+        return new Predicate<ImmutableElement>() {
+
+            @Override
+            public boolean apply(@Nullable final ImmutableElement input)
+            {
+                return Iterables.any(input.children(name), matching);
+            }
+
+            @Override
+            public String toString()
+            {
+                return matching.toString();
+            }
+        };
+    }
+
     public static class AttrPredicate implements Predicate<ImmutableElement>
     {
         private final String name;
@@ -170,13 +202,13 @@ public abstract class ImmutableElements
         public AttrPredicate(final String name)
         {
             super();
-            this.name = name;
+            this.name = "@" + name;
         }
 
         @Override
         public boolean apply(@Nullable final ImmutableElement element)
         {
-            return ("@" + this.name).equals(element.name());
+            return this.name.equals(element.name());
         }
 
         /**
@@ -223,6 +255,15 @@ public abstract class ImmutableElements
         };
     }
 
+    private static Predicate<ImmutableElement> isInternal = new Predicate<ImmutableElement>() {
+
+        @Override
+        public boolean apply(@Nonnull final ImmutableElement e)
+        {
+            return e.kind() == NodeKind.ELEMENT;
+        }
+    };
+
     /**
      * Is this node neither an attribute or a text node. The element can be an
      * child.
@@ -231,7 +272,7 @@ public abstract class ImmutableElements
      */
     public static Predicate<ImmutableElement> isInternal()
     {
-        return and(not(isAttribute), not(isText));
+        return isInternal;
     }
 
     private static final Function<ImmutableElement, String> toName = new Function<ImmutableElement, String>() {
@@ -253,4 +294,111 @@ public abstract class ImmutableElements
     {
         return toName;
     }
+
+    /**
+     * Compute the structural hash of a node from its kind, name, value and the
+     * structural hashes of its children.
+     * 
+     * @param element
+     *            The node
+     * @return The hash, see {@link ImmutableElement#structuralHash()}
+     */
+    public static long computeStructuralHash(@Nonnull final ImmutableElement element)
+    {
+        long hash = element.kind().ordinal() + 1;
+        hash = hash * HASH_MULTIPLIER + hash(element.name());
+        if(element.kind() == NodeKind.ELEMENT)
+        {
+            for(final ImmutableElement child : element.children())
+            {
+                hash = hash * HASH_MULTIPLIER + child.structuralHash();
+            }
+        }
+        else
+        {
+            hash = hash * HASH_MULTIPLIER + hash(element.value());
+        }
+        // spread the bits of the final hash
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static final long HASH_MULTIPLIER = 1099511628211L;
+
+    private static long hash(final String value)
+    {
+        long hash = 1125899906842597L;
+        for(int i = 0; i < value.length(); i++)
+        {
+            hash = 31 * hash + value.charAt(i);
+        }
+        return hash;
+    }
+
+    /**
+     * Test if two nodes have the same kind, name and value and structurally
+     * equal children in the same order. Nodes with different structural hashes
+     * are not compared any further.
+     * 
+     * @return true if the nodes are structurally equal
+     */
+    public static boolean structurallyEqual(@Nonnull final ImmutableElement a, @Nonnull final ImmutableElement b)
+    {
+        if(a == b)
+        {
+            return true;
+        }
+        if(a.kind() != b.kind() || a.structuralHash() != b.structuralHash() || !a.name().equals(b.name()))
+        {
+            return false;
+        }
+        if(a.kind() != NodeKind.ELEMENT)
+        {
+            return a.value().equals(b.value());
+        }
+        final ImmutableList<ImmutableElement> aChildren = a.children();
+        final ImmutableList<ImmutableElement> bChildren = b.children();
+        if(aChildren.size() != bChildren.size())
+        {
+            return false;
+        }
+        for(int i = 0; i < aChildren.size(); i++)
+        {
+            if(!structurallyEqual(aChildren.get(i), bChildren.get(i)))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final Equivalence<ImmutableElement> structuralEquivalence = new Equivalence<ImmutableElement>() {
+
+        @Override
+        protected boolean doEquivalent(final ImmutableElement a, final ImmutableElement b)
+        {
+            return structurallyEqual(a, b);
+        }
+
+        @Override
+        protected int doHash(final ImmutableElement element)
+        {
+            final long hash = element.structuralHash();
+            return (int) (hash ^ hash >>> 32);
+        }
+    };
+
+    /**
+     * Compare nodes by structure, for instance to deduplicate subtrees with
+     * {@link Equivalence#wrap(Object)}.
+     * 
+     * @return An equivalence using
+     *         {@link #structurallyEqual(ImmutableElement, ImmutableElement)}
+     */
+    public static Equivalence<ImmutableElement> structuralEquivalence()
+    {
+        return structuralEquivalence;
+    }
 }
@@ -19,22 +19,30 @@ import javax.annotation.Nonnull;
 
 import xml.entity.select.Selector;
 
-import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
-import com.google.common.collect.FluentIterable;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Multimaps;
 
 
 class InternalElement extends AbstractElement implements ImmutableElement
 {
+    /** Nodes with at least this many children index them by name */
+    static final int INDEX_THRESHOLD = 16;
+
     private final ImmutableList<ImmutableElement> children;
+    /** Built on first use, racing threads build equal indexes */
+    private volatile ImmutableListMultimap<String, ImmutableElement> index = null;
+    /** The joined text children, built on first use */
+    private volatile String value = null;
+
     InternalElement(
 			@Nonnull final String name,
             @Nonnull final ImmutableList<ImmutableElement> children,
 			@Nonnull final Selector selector)
 	{
-        super(name, selector);
+        super(name, NodeKind.ELEMENT, selector);
         Preconditions.checkNotNull(name);
         Preconditions.checkNotNull(children);
         Preconditions.checkNotNull(selector);
@@ -44,20 +52,53 @@ class InternalElement extends AbstractElement implements ImmutableElement
 	@Override
 	public String value()
 	{
-        return Joiner.on("").join(Iterables.filter(children, ImmutableElements.byName("#text")));
+        String value = this.value;
+        if(value == null)
+        {
+            value = joinText();
+            this.value = value;
+        }
+        return value;
 	}
 
+    private String joinText()
+    {
+        ImmutableElement single = null;
+        StringBuilder builder = null;
+        for(final ImmutableElement child : children)
+        {
+            if(child.kind() != NodeKind.TEXT)
+            {
+                continue;
+            }
+            if(single == null && builder == null)
+            {
+                // the common case of a single text child needs no copy
+                single = child;
+            }
+            else
+            {
+                if(builder == null)
+                {
+                    builder = new StringBuilder(single.value());
+                    single = null;
+                }
+                builder.append(child.value());
+            }
+        }
+        if(builder != null)
+        {
+            return builder.toString();
+        }
+        return single == null ? "" : single.value();
+    }
+
 	@Override
 	public ImmutableElement child(final String name)
 	{
-        final FluentIterable<ImmutableElement> collection = FluentIterable
-                .from(children)
-                .filter(ImmutableElements.byName(name));
-
-        return Iterables.getOnlyElement(collection);
+        return Iterables.getOnlyElement(children(name));
 	}
 
-
     @Override
     @Nonnull
     public ImmutableList<ImmutableElement> children()
@@ -65,6 +106,31 @@ class InternalElement extends AbstractElement implements ImmutableElement
         return children;
     }
 
+    @Override
+    @Nonnull
+    public ImmutableList<ImmutableElement> children(@Nonnull final String name)
+    {
+        if(children.size() < INDEX_THRESHOLD)
+        {
+            final ImmutableList.Builder<ImmutableElement> builder = ImmutableList.builder();
+            for(final ImmutableElement child : children)
+            {
+                if(name.equals(child.name()))
+                {
+                    builder.add(child);
+                }
+            }
+            return builder.build();
+        }
+        ImmutableListMultimap<String, ImmutableElement> index = this.index;
+        if(index == null)
+        {
+            index = Multimaps.index(children, ImmutableElements.toName());
+            this.index = index;
+        }
+        return index.get(name);
+    }
+
     @Override public String toString()
     {
         return name() + children.toString();
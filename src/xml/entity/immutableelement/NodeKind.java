@@ -0,0 +1,29 @@
+/*
+ * Copyright 2013 Christof Lemke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xml.entity.immutableelement;
+
+/**
+ * The kind of an {@link ImmutableElement}.
+ */
+public enum NodeKind
+{
+    /** A node that may have children, named like the xml element */
+    ELEMENT,
+    /** An attribute, the name starts with '@' */
+    ATTRIBUTE,
+    /** A text node, named '#text' */
+    TEXT
+}
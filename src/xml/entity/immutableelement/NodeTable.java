@@ -0,0 +1,85 @@
+/*
+ * Copyright 2013 Christof Lemke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xml.entity.immutableelement;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.google.common.base.Equivalence;
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Canonical instances of small subtrees. Text, attributes and elements with at
+ * most {@link #MAX_CHILDREN} children that are canonical themselves are kept,
+ * the least recently used ones are evicted once the table is full.
+ */
+@ThreadSafe
+final class NodeTable
+{
+    static final int MAX_CHILDREN = 8;
+
+    private final Equivalence<ImmutableElement> equivalence = ImmutableElements.structuralEquivalence();
+    private final Cache<Equivalence.Wrapper<ImmutableElement>, AbstractElement> nodes;
+
+    NodeTable(final long maxSize)
+    {
+        Preconditions.checkArgument(maxSize >= 0, "maxSize must not be negative");
+        this.nodes = CacheBuilder.newBuilder().maximumSize(maxSize).build();
+    }
+
+    /**
+     * @param node
+     *            A new node
+     * @return The canonical instance of the node, or the node itself if it is
+     *         too large to be shared
+     */
+    @Nonnull
+    AbstractElement intern(@Nonnull final AbstractElement node)
+    {
+        if(!isSmall(node.children()))
+        {
+            return node;
+        }
+        final Equivalence.Wrapper<ImmutableElement> key = this.equivalence.wrap((ImmutableElement) node);
+        final AbstractElement existing = this.nodes.getIfPresent(key);
+        if(existing != null)
+        {
+            return existing;
+        }
+        node.markShared();
+        final AbstractElement raced = this.nodes.asMap().putIfAbsent(key, node);
+        return raced == null ? node : raced;
+    }
+
+    private static boolean isSmall(final ImmutableList<ImmutableElement> children)
+    {
+        if(children.size() > MAX_CHILDREN)
+        {
+            return false;
+        }
+        for(final ImmutableElement child : children)
+        {
+            if(!(child instanceof AbstractElement) || !((AbstractElement) child).isShared())
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+}
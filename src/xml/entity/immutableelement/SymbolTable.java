@@ -0,0 +1,84 @@
+/*
+ * Copyright 2013 Christof Lemke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xml.entity.immutableelement;
+
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+
+/**
+ * Canonical instances of element and attribute names. Once the table is full
+ * new names are returned as they are.
+ */
+@ThreadSafe
+final class SymbolTable
+{
+    private final int maxSize;
+    private final ConcurrentMap<String, String> elementNames = Maps.newConcurrentMap();
+    private final ConcurrentMap<String, String> attributeNames = Maps.newConcurrentMap();
+
+    SymbolTable(final int maxSize)
+    {
+        Preconditions.checkArgument(maxSize >= 0, "maxSize must not be negative");
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @param name
+     *            An element name
+     * @return The canonical instance of the name
+     */
+    @Nonnull
+    String elementName(@Nonnull final String name)
+    {
+        final String symbol = this.elementNames.get(name);
+        if(symbol != null)
+        {
+            return symbol;
+        }
+        return put(this.elementNames, name, name);
+    }
+
+    /**
+     * @param name
+     *            An attribute name without '@'
+     * @return The canonical instance of the name prefixed with '@'
+     */
+    @Nonnull
+    String attributeName(@Nonnull final String name)
+    {
+        final String symbol = this.attributeNames.get(name);
+        if(symbol != null)
+        {
+            return symbol;
+        }
+        return put(this.attributeNames, name, "@" + name);
+    }
+
+    private String put(final ConcurrentMap<String, String> symbols, final String name, final String symbol)
+    {
+        if(symbols.size() >= this.maxSize)
+        {
+            return symbol;
+        }
+        final String existing = symbols.putIfAbsent(name, symbol);
+        return existing == null ? symbol : existing;
+    }
+}
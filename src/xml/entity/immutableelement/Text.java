@@ -26,7 +26,7 @@ class Text extends AbstractElement implements ImmutableElement
 
     Text(final String value, final Selector selector)
     {
-        super("#text", selector);
+        super("#text", NodeKind.TEXT, selector);
         this.value = value;
     }
 
@@ -0,0 +1,384 @@
+/*
+ * Copyright 2013 Christof Lemke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xml.entity.immutableelement;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * A position in a tree that can be moved to the parent, children and siblings
+ * of the current node and that can edit the tree around it. Moves and edits
+ * return a new zipper and never modify the tree, {@link #root()} returns the
+ * edited tree. Only the ancestors of edited nodes are rebuilt, when the
+ * zipper moves up, every other subtree is shared with the original tree. Moves
+ * between siblings take constant time, the children of a parent are copied
+ * once when the zipper moves up to it.
+ * 
+ * <pre>
+ * ImmutableElement edited = Zipper.create(root, factory)
+ *         .down("Bar").right().replace(replacement)
+ *         .root();
+ * </pre>
+ */
+@Immutable
+public final class Zipper
+{
+    /**
+     * An immutable stack of siblings, the nearest sibling first.
+     */
+    private static final class Siblings
+    {
+        final ImmutableElement head;
+        @Nullable final Siblings tail;
+
+        Siblings(final ImmutableElement head, @Nullable final Siblings tail)
+        {
+            this.head = head;
+            this.tail = tail;
+        }
+    }
+
+    private final ImmutableElementFactory factory;
+    private final ImmutableElement node;
+    /** null at the root */
+    @Nullable private final Zipper parent;
+    /**
+     * The children of the parent as it was entered. The siblings left of the
+     * current node are the children before leftEnd followed by the left
+     * stack in reverse, the siblings right of it are the right stack
+     * followed by the children from rightStart.
+     */
+    @Nullable private final ImmutableList<ImmutableElement> children;
+    private final int leftEnd;
+    @Nullable private final Siblings left;
+    @Nullable private final Siblings right;
+    private final int rightStart;
+    private final int index;
+    /** true if node or any of the siblings differ from the parent */
+    private final boolean changed;
+
+    private Zipper(
+            final ImmutableElementFactory factory,
+            final ImmutableElement node,
+            @Nullable final Zipper parent,
+            @Nullable final ImmutableList<ImmutableElement> children,
+            final int leftEnd,
+            @Nullable final Siblings left,
+            @Nullable final Siblings right,
+            final int rightStart,
+            final int index,
+            final boolean changed)
+    {
+        this.factory = factory;
+        this.node = node;
+        this.parent = parent;
+        this.children = children;
+        this.leftEnd = leftEnd;
+        this.left = left;
+        this.right = right;
+        this.rightStart = rightStart;
+        this.index = index;
+        this.changed = changed;
+    }
+
+    /**
+     * Start at the root of a tree.
+     * 
+     * @param root
+     *            The tree
+     * @param factory
+     *            Creates the rebuilt ancestors of edited nodes
+     * @return A zipper at the root
+     */
+    @Nonnull
+    public static Zipper create(@Nonnull final ImmutableElement root, @Nonnull final ImmutableElementFactory factory)
+    {
+        return new Zipper(Preconditions.checkNotNull(factory), Preconditions.checkNotNull(root), null, null, 0, null, null, 0, -1, false);
+    }
+
+    /**
+     * @return The current node
+     */
+    @Nonnull
+    public ImmutableElement node()
+    {
+        return this.node;
+    }
+
+    /**
+     * @return true if the current node is the root of the tree
+     */
+    public boolean isRoot()
+    {
+        return this.parent == null;
+    }
+
+    /**
+     * @return The position of the current node among its siblings, -1 at the
+     *         root
+     */
+    public int index()
+    {
+        return this.index;
+    }
+
+    /**
+     * @return true if there is a sibling after the current node
+     */
+    public boolean hasRight()
+    {
+        return this.right != null || this.children != null && this.rightStart < this.children.size();
+    }
+
+    /**
+     * @return true if there is a sibling before the current node
+     */
+    public boolean hasLeft()
+    {
+        return this.left != null || this.leftEnd > 0;
+    }
+
+    /**
+     * Move to a child of the current node.
+     * 
+     * @param childIndex
+     *            The position of the child
+     * @return A zipper at the child
+     * @throws IllegalStateException
+     *             If there is no such child
+     */
+    @Nonnull
+    public Zipper down(final int childIndex)
+    {
+        final ImmutableList<ImmutableElement> children = this.node.children();
+        Preconditions.checkState(childIndex >= 0 && childIndex < children.size(), "node %s has no child %s", this.node, childIndex);
+        return child(children, childIndex);
+    }
+
+    /**
+     * Move to the first child of the current node.
+     * 
+     * @return A zipper at the child
+     * @throws IllegalStateException
+     *             If the node has no children
+     */
+    @Nonnull
+    public Zipper down()
+    {
+        return down(0);
+    }
+
+    /**
+     * Move to the first child with the given name.
+     * 
+     * @param name
+     *            The name of the child, "@name" for attributes
+     * @return A zipper at the child
+     * @throws IllegalStateException
+     *             If there is no child with the name
+     */
+    @Nonnull
+    public Zipper down(@Nonnull final String name)
+    {
+        final ImmutableList<ImmutableElement> children = this.node.children();
+        for(int i = 0; i < children.size(); i++)
+        {
+            if(name.equals(children.get(i).name()))
+            {
+                return child(children, i);
+            }
+        }
+        throw new IllegalStateException("node " + this.node + " has no child " + name);
+    }
+
+    /**
+     * Move to the parent of the current node. If anything below the parent
+     * has been edited the parent is rebuilt with the edited children.
+     * 
+     * @return A zipper at the parent
+     * @throws IllegalStateException
+     *             At the root
+     */
+    @Nonnull
+    public Zipper up()
+    {
+        Preconditions.checkState(this.parent != null, "the root has no parent");
+        if(!this.changed)
+        {
+            return this.parent;
+        }
+        final ImmutableElement rebuilt = this.factory.createNode(this.parent.node.name(), siblings(true));
+        return this.parent.replace(rebuilt);
+    }
+
+    /**
+     * Move to the next sibling.
+     * 
+     * @return A zipper at the sibling
+     * @throws IllegalStateException
+     *             If the current node is the last child or the root
+     */
+    @Nonnull
+    public Zipper right()
+    {
+        Preconditions.checkState(hasRight(), "node %s has no right sibling", this.node);
+        final Siblings left = new Siblings(this.node, this.left);
+        if(this.right != null)
+        {
+            return new Zipper(this.factory, this.right.head, this.parent, this.children, this.leftEnd, left, this.right.tail, this.rightStart, this.index + 1, this.changed);
+        }
+        return new Zipper(this.factory, this.children.get(this.rightStart), this.parent, this.children, this.leftEnd, left, null, this.rightStart + 1, this.index + 1, this.changed);
+    }
+
+    /**
+     * Move to the previous sibling.
+     * 
+     * @return A zipper at the sibling
+     * @throws IllegalStateException
+     *             If the current node is the first child or the root
+     */
+    @Nonnull
+    public Zipper left()
+    {
+        Preconditions.checkState(hasLeft(), "node %s has no left sibling", this.node);
+        final Siblings right = new Siblings(this.node, this.right);
+        if(this.left != null)
+        {
+            return new Zipper(this.factory, this.left.head, this.parent, this.children, this.leftEnd, this.left.tail, right, this.rightStart, this.index - 1, this.changed);
+        }
+        return new Zipper(this.factory, this.children.get(this.leftEnd - 1), this.parent, this.children, this.leftEnd - 1, null, right, this.rightStart, this.index - 1, this.changed);
+    }
+
+    /**
+     * Replace the current node.
+     * 
+     * @param replacement
+     *            The new node
+     * @return A zipper at the new node
+     */
+    @Nonnull
+    public Zipper replace(@Nonnull final ImmutableElement replacement)
+    {
+        Preconditions.checkNotNull(replacement);
+        return new Zipper(this.factory, replacement, this.parent, this.children, this.leftEnd, this.left, this.right, this.rightStart, this.index, this.changed || replacement != this.node);
+    }
+
+    /**
+     * Insert a sibling before the current node.
+     * 
+     * @param sibling
+     *            The new node
+     * @return A zipper that stays at the current node
+     * @throws IllegalStateException
+     *             At the root
+     */
+    @Nonnull
+    public Zipper insertLeft(@Nonnull final ImmutableElement sibling)
+    {
+        checkHasParent();
+        return new Zipper(this.factory, this.node, this.parent, this.children, this.leftEnd, new Siblings(Preconditions.checkNotNull(sibling), this.left), this.right, this.rightStart, this.index + 1, true);
+    }
+
+    /**
+     * Insert a sibling after the current node.
+     * 
+     * @param sibling
+     *            The new node
+     * @return A zipper that stays at the current node
+     * @throws IllegalStateException
+     *             At the root
+     */
+    @Nonnull
+    public Zipper insertRight(@Nonnull final ImmutableElement sibling)
+    {
+        checkHasParent();
+        return new Zipper(this.factory, this.node, this.parent, this.children, this.leftEnd, this.left, new Siblings(Preconditions.checkNotNull(sibling), this.right), this.rightStart, this.index, true);
+    }
+
+    /**
+     * Remove the current node.
+     * 
+     * @return A zipper at the parent of the removed node
+     * @throws IllegalStateException
+     *             At the root
+     */
+    @Nonnull
+    public Zipper remove()
+    {
+        Preconditions.checkState(this.parent != null, "the root can not be removed");
+        return this.parent.replace(this.factory.createNode(this.parent.node.name(), siblings(false)));
+    }
+
+    /**
+     * Move up to the root.
+     * 
+     * @return The root of the edited tree
+     */
+    @Nonnull
+    public ImmutableElement root()
+    {
+        Zipper zipper = this;
+        while(zipper.parent != null)
+        {
+            zipper = zipper.up();
+        }
+        return zipper.node;
+    }
+
+    private Zipper child(final ImmutableList<ImmutableElement> children, final int childIndex)
+    {
+        return new Zipper(this.factory, children.get(childIndex), this, children, childIndex, null, null, childIndex + 1, childIndex, false);
+    }
+
+    private void checkHasParent()
+    {
+        Preconditions.checkState(this.parent != null, "the root can not have siblings");
+    }
+
+    /**
+     * Collect the children of the parent, this is the only place the sibling
+     * stacks are copied.
+     * 
+     * @param withNode
+     *            false to leave out the current node
+     */
+    private ImmutableList<ImmutableElement> siblings(final boolean withNode)
+    {
+        final ImmutableList.Builder<ImmutableElement> builder = ImmutableList.builder();
+        builder.addAll(this.children.subList(0, this.leftEnd));
+        final ImmutableElement[] left = new ImmutableElement[this.index - this.leftEnd];
+        int i = left.length;
+        for(Siblings s = this.left; s != null; s = s.tail)
+        {
+            left[--i] = s.head;
+        }
+        builder.add(left);
+        if(withNode)
+        {
+            builder.add(this.node);
+        }
+        for(Siblings s = this.right; s != null; s = s.tail)
+        {
+            builder.add(s.head);
+        }
+        builder.addAll(this.children.subList(this.rightStart, this.children.size()));
+        return builder.build();
+    }
+}
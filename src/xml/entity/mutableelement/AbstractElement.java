@@ -18,21 +18,70 @@ package xml.entity.mutableelement;
 import java.util.Collection;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
+import xml.entity.immutableelement.ImmutableElement;
 import xml.entity.immutableelement.ImmutableElementFactory;
 
+import com.google.common.base.Preconditions;
+
 abstract class AbstractElement implements Element
 {
     protected final ImmutableElementFactory factory;
     @Nonnull private final String name;
+    /** null unless the node belongs to a transient tree */
+    @Nullable protected final Edit edit;
 
     AbstractElement(
             @Nonnull final String name,
-            final ImmutableElementFactory factory)
+            final ImmutableElementFactory factory,
+            @Nullable final Edit edit)
     {
         super();
         this.name = name;
         this.factory = factory;
+        this.edit = edit;
+    }
+
+    /**
+     * @throws IllegalStateException
+     *             If the node belongs to a frozen tree
+     */
+    void checkEditable()
+    {
+        if(this.edit != null)
+        {
+            this.edit.check();
+        }
+    }
+
+    /**
+     * A transient tree does not hold null values, they could not be frozen.
+     * 
+     * @return The value
+     * @throws NullPointerException
+     *             If the value is null and the node belongs to a transient tree
+     */
+    @Nullable
+    String checkValue(@Nullable final String value)
+    {
+        if(this.edit != null)
+        {
+            Preconditions.checkNotNull(value, "a transient tree can not hold null values");
+        }
+        return value;
+    }
+
+    @Override
+    @Nonnull
+    public ImmutableElement freeze()
+    {
+        if(this.edit == null)
+        {
+            return immutableCopy();
+        }
+        this.edit.freeze();
+        return FrozenElement.create(this, this.factory);
     }
 
     @Override
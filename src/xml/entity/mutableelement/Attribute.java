@@ -27,13 +27,19 @@ class Attribute extends AbstractElement implements Element
 
     Attribute(final String name, final String value, final ImmutableElementFactory factory)
     {
-        super("@" + name, factory);
-        this.value = value;
+        this(name, value, factory, null);
+    }
+
+    Attribute(final String name, final String value, final ImmutableElementFactory factory, @Nullable final Edit edit)
+    {
+        super("@" + name, factory, edit);
+        this.value = checkValue(value);
     }
 
     @Override public Element value(final String value)
     {
-        this.value = value;
+        checkEditable();
+        this.value = checkValue(value);
         return this;
     }
 
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2013 Christof Lemke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xml.entity.mutableelement;
+
+import java.util.Collection;
+import java.util.Iterator;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import xml.entity.immutableelement.ImmutableElement;
+import xml.entity.immutableelement.ImmutableElementFactory;
+import xml.entity.immutableelement.NodeKind;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * An {@link Element} over an {@link ImmutableElement}. The children are wrapped
+ * the first time the node is accessed or modified, nodes that are never touched
+ * are not copied. The wrappers are kept in the order of the original children,
+ * {@link #immutableCopy()} returns the wrapped node itself if none of them
+ * returns a different node, so untouched subtrees are shared with the
+ * original tree.
+ */
+class CopyOnWriteElement extends AbstractElement implements Element
+{
+    @Nonnull private final ImmutableElement original;
+    /** null until the node is opened */
+    @Nullable private InternalElement contents = null;
+    /**
+     * The children of the original the wrappers were created from, views of
+     * stored documents return new instances from every call to children()
+     */
+    @Nullable private ImmutableList<ImmutableElement> originalChildren = null;
+
+    private CopyOnWriteElement(@Nonnull final ImmutableElement original, final ImmutableElementFactory factory)
+    {
+        super(original.name(), factory, null);
+        this.original = original;
+    }
+
+    /**
+     * @return A view of the given element, attributes and text are wrapped by
+     *         a {@link CopyOnWriteLeaf}
+     */
+    static Element create(@Nonnull final ImmutableElement original, final ImmutableElementFactory factory)
+    {
+        if(original.kind() == NodeKind.ELEMENT)
+        {
+            return new CopyOnWriteElement(original, factory);
+        }
+        return new CopyOnWriteLeaf(original, factory);
+    }
+
+    private InternalElement contents()
+    {
+        if(this.contents == null)
+        {
+            final InternalElement contents = new InternalElement(name(), this.factory);
+            final Collection<Element> children = contents.childList();
+            final ImmutableList<ImmutableElement> originalChildren = this.original.children();
+            for(final ImmutableElement child : originalChildren)
+            {
+                children.add(create(child, this.factory));
+            }
+            this.originalChildren = originalChildren;
+            this.contents = contents;
+        }
+        return this.contents;
+    }
+
+    @Override
+    public String value()
+    {
+        if(this.contents != null)
+        {
+            return this.contents.value();
+        }
+        final String value = this.original.value();
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    @Override
+    public Element value(final String value)
+    {
+        contents().value(value);
+        return this;
+    }
+
+    @Override
+    @Nonnull
+    public Element child(final String name)
+    {
+        return contents().child(name);
+    }
+
+    @Override
+    @Nonnull
+    public Element attribute(final String string)
+    {
+        return contents().attribute(string);
+    }
+
+    @Override
+    @Nonnull
+    public Collection<Element> children()
+    {
+        return contents().children();
+    }
+
+    @Override
+    @Nonnull
+    public Element copy()
+    {
+        return contents().copy();
+    }
+
+    @Override
+    public ImmutableElement immutableCopy()
+    {
+        if(this.contents == null)
+        {
+            return this.original;
+        }
+        final ImmutableList.Builder<ImmutableElement> builder = ImmutableList.builder();
+        for(final Element child : this.contents.childList())
+        {
+            builder.add(child.immutableCopy());
+        }
+        final ImmutableList<ImmutableElement> children = builder.build();
+        if(sameChildren(children))
+        {
+            return this.original;
+        }
+        return this.factory.createNode(name(), children);
+    }
+
+    private boolean sameChildren(final ImmutableList<ImmutableElement> children)
+    {
+        final ImmutableList<ImmutableElement> originalChildren = this.originalChildren;
+        if(children.size() != originalChildren.size())
+        {
+            return false;
+        }
+        final Iterator<ImmutableElement> iterator = originalChildren.iterator();
+        for(final ImmutableElement child : children)
+        {
+            if(child != iterator.next())
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString()
+    {
+        return this.contents != null ? this.contents.toString() : this.original.toString();
+    }
+}
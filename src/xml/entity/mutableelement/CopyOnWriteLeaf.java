@@ -0,0 +1,92 @@
+/*
+ * Copyright 2013 Christof Lemke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xml.entity.mutableelement;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import xml.entity.immutableelement.ImmutableElement;
+import xml.entity.immutableelement.ImmutableElementFactory;
+import xml.entity.immutableelement.NodeKind;
+
+/**
+ * An attribute or text {@link Element} over an {@link ImmutableElement}, see
+ * {@link CopyOnWriteElement}.
+ */
+class CopyOnWriteLeaf extends AbstractElement implements Element
+{
+    @Nonnull private final ImmutableElement original;
+    private String value;
+    private boolean changed = false;
+
+    CopyOnWriteLeaf(@Nonnull final ImmutableElement original, final ImmutableElementFactory factory)
+    {
+        super(original.name(), factory, null);
+        this.original = original;
+        this.value = original.value();
+    }
+
+    @Override
+    public Element value(final String value)
+    {
+        this.value = value;
+        this.changed = true;
+        return this;
+    }
+
+    @Override
+    @Nullable
+    public String value()
+    {
+        return this.value;
+    }
+
+    @Override
+    @Nonnull
+    public Element copy()
+    {
+        if(isAttribute())
+        {
+            return new Attribute(name().substring(1), this.value, this.factory);
+        }
+        return new Text(this.value, this.factory);
+    }
+
+    @Override
+    public ImmutableElement immutableCopy()
+    {
+        if(!this.changed)
+        {
+            return this.original;
+        }
+        if(isAttribute())
+        {
+            return this.factory.createAttr(name().substring(1), this.value);
+        }
+        return this.factory.createText(this.value);
+    }
+
+    private boolean isAttribute()
+    {
+        return this.original.kind() == NodeKind.ATTRIBUTE;
+    }
+
+    @Override
+    public String toString()
+    {
+        return isAttribute() ? name() + "=" + this.value : this.value;
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2013 Christof Lemke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xml.entity.mutableelement;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Shared by all nodes of a transient tree, see
+ * {@link ElementFactory#createTransient(String)}. Once frozen no node of the
+ * tree can be modified.
+ */
+@ThreadSafe
+final class Edit
+{
+    private volatile boolean frozen = false;
+
+    void freeze()
+    {
+        this.frozen = true;
+    }
+
+    boolean isFrozen()
+    {
+        return this.frozen;
+    }
+
+    /**
+     * @throws IllegalStateException
+     *             If the tree has been frozen
+     */
+    void check()
+    {
+        if(this.frozen)
+        {
+            throw new IllegalStateException("the element has been frozen");
+        }
+    }
+}
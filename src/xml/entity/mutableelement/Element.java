@@ -68,6 +68,17 @@ public interface Element
      */
     ImmutableElement immutableCopy();
 
+    /**
+     * Turn a transient tree, see {@link ElementFactory#createTransient(String)}
+     * , into an immutable one without copying. The nodes of the tree are used
+     * by the returned element, so the tree can not be modified afterwards.
+     * Other elements are copied as by {@link #immutableCopy()}.
+     * 
+     * @return An immutable view of the tree of this element
+     */
+    @Nonnull
+    ImmutableElement freeze();
+
     /**
      * Add or access an attribute on this node. Creates the node if its missing.
      * 
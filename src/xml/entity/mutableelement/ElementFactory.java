@@ -15,6 +15,7 @@
  */
 package xml.entity.mutableelement;
 
+import xml.entity.immutableelement.ImmutableElement;
 import xml.entity.immutableelement.ImmutableElementFactory;
 
 public class ElementFactory
@@ -49,6 +50,37 @@ public class ElementFactory
         return new InternalElement(name, this.immutableFactory);
 	}
 
+    /**
+     * Create a transient element. All nodes added below it are transient too,
+     * {@link Element#freeze()} turns the tree into an {@link ImmutableElement}
+     * in constant time. Once frozen any modification of a node of the tree
+     * throws an {@link IllegalStateException}. Nodes of other trees that are
+     * added through {@link Element#children()} are copied into the tree, and
+     * the tree does not accept null values, new attributes are empty.
+     * 
+     * @param name
+     *            The element name.
+     * @return A new node.
+     */
+    public Element createTransient(final String name)
+    {
+        return new InternalElement(name, this.immutableFactory, new Edit());
+    }
+
+    /**
+     * Create a mutable view of an immutable tree. The nodes are copied when
+     * they are accessed, {@link Element#immutableCopy()} shares the subtrees
+     * that have not been modified with the given tree.
+     *
+     * @param element
+     *            The tree to edit, it is not modified.
+     * @return A node for the given element.
+     */
+    public Element createCopyOnWrite(final ImmutableElement element)
+    {
+        return CopyOnWriteElement.create(element, this.immutableFactory);
+    }
+
     /**
      * Create a attribute.
      * 
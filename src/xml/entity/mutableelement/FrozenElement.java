@@ -0,0 +1,166 @@
+/*
+ * Copyright 2013 Christof Lemke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xml.entity.mutableelement;
+
+import javax.annotation.Nonnull;
+
+import xml.entity.immutableelement.AbstractElementView;
+import xml.entity.immutableelement.ImmutableElement;
+import xml.entity.immutableelement.ImmutableElementFactory;
+import xml.entity.immutableelement.NodeKind;
+import xml.entity.select.DefaultSelector;
+import xml.entity.select.PathParser;
+import xml.entity.select.Selector;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+
+/**
+ * An {@link ImmutableElement} view of a node of a frozen transient tree, see
+ * {@link Element#freeze()}. Views of the children are created on first access
+ * and kept, so their structural hashes are computed once. Two views of the
+ * same node are equal.
+ */
+final class FrozenElement extends AbstractElementView
+{
+    private final AbstractElement element;
+    private final NodeKind kind;
+    private final Selector selector;
+    /** null until first accessed */
+    private volatile ImmutableList<ImmutableElement> children = null;
+
+    private FrozenElement(@Nonnull final AbstractElement element, @Nonnull final Selector selector)
+    {
+        this.element = element;
+        this.selector = selector;
+        if(element instanceof Attribute)
+        {
+            this.kind = NodeKind.ATTRIBUTE;
+        }
+        else if(element instanceof Text)
+        {
+            this.kind = NodeKind.TEXT;
+        }
+        else
+        {
+            this.kind = NodeKind.ELEMENT;
+        }
+    }
+
+    static ImmutableElement create(@Nonnull final AbstractElement element, @Nonnull final ImmutableElementFactory factory)
+    {
+        return new FrozenElement(element, new DefaultSelector(PathParser.create(), factory));
+    }
+
+    @Override
+    public String name()
+    {
+        return this.element.name();
+    }
+
+    @Override
+    public NodeKind kind()
+    {
+        return this.kind;
+    }
+
+    @Override
+    public String value()
+    {
+        if(this.kind != NodeKind.ELEMENT)
+        {
+            return this.element.value();
+        }
+        final String value = this.element.value();
+        return value == null ? "" : value;
+    }
+
+    @Override
+    @Nonnull
+    public ImmutableList<ImmutableElement> children()
+    {
+        if(this.kind != NodeKind.ELEMENT)
+        {
+            return ImmutableList.of();
+        }
+        ImmutableList<ImmutableElement> children = this.children;
+        if(children == null)
+        {
+            final ImmutableList.Builder<ImmutableElement> builder = ImmutableList.builder();
+            for(final Element child : ((InternalElement) this.element).childList())
+            {
+                builder.add(new FrozenElement((AbstractElement) child, this.selector));
+            }
+            children = builder.build();
+            this.children = children;
+        }
+        return children;
+    }
+
+    @Override
+    @Nonnull
+    public ImmutableList<ImmutableElement> children(@Nonnull final String name)
+    {
+        if(this.kind != NodeKind.ELEMENT)
+        {
+            return ImmutableList.of();
+        }
+        final ImmutableList.Builder<ImmutableElement> builder = ImmutableList.builder();
+        for(final ImmutableElement child : children())
+        {
+            if(name.equals(child.name()))
+            {
+                builder.add(child);
+            }
+        }
+        return builder.build();
+    }
+
+    @Override
+    public ImmutableElement child(final String name)
+    {
+        if(this.kind != NodeKind.ELEMENT)
+        {
+            throw new IllegalStateException("node " + this + " has no children");
+        }
+        return Iterables.getOnlyElement(children(name));
+    }
+
+    @Override
+    @Nonnull
+    protected Selector selector()
+    {
+        return this.selector;
+    }
+
+    @Override
+    public boolean equals(final Object obj)
+    {
+        return obj instanceof FrozenElement && ((FrozenElement) obj).element == this.element;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return System.identityHashCode(this.element);
+    }
+
+    @Override
+    public String toString()
+    {
+        return this.element.toString();
+    }
+}
@@ -15,59 +15,101 @@
  */
 package xml.entity.mutableelement;
 
+import java.util.AbstractList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import xml.entity.immutableelement.ImmutableElement;
 import xml.entity.immutableelement.ImmutableElementFactory;
 
 import com.google.common.base.Joiner;
-import com.google.common.base.Optional;
+import com.google.common.base.Strings;
 import com.google.common.collect.Collections2;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
-
+/**
+ * The children are kept in document order. The first attribute with each name
+ * and the position of the text are indexed, so that
+ * {@link #attribute(String)} and {@link #value(String)} do not scan the
+ * children. Setting the value removes the text and appends the new text.
+ */
 class InternalElement extends AbstractElement implements Element
 {
-    private final List<Element> children = Lists.newArrayList();
+    private final Children children = new Children();
+
     InternalElement(
             @Nonnull final String name,
             final ImmutableElementFactory factory)
 	{
-        super(name, factory);
+        this(name, factory, null);
 	}
 
+    InternalElement(
+            @Nonnull final String name,
+            final ImmutableElementFactory factory,
+            @Nullable final Edit edit)
+    {
+        super(name, factory, edit);
+    }
+
 	@Override
 	public String value()
 	{
-        final String value = Joiner.on("").join(Iterables.filter(this.children, Elements.byName("#text")));
+        final String value;
+        if(this.children.textCount == 1)
+        {
+            value = String.valueOf(this.children.get(this.children.textIndex));
+        }
+        else
+        {
+            value = Joiner.on("").join(Iterables.filter(this.children, Elements.byName("#text")));
+        }
         return "".equals(value) ? null : value;
 	}
 
 	@Override
 	public Element child(final String name)
 	{
-        final InternalElement child = new InternalElement(name, this.factory);
-        children.add(child);
+        checkEditable();
+        final InternalElement child = new InternalElement(name, this.factory, this.edit);
+        this.children.add(child);
         return child;
 	}
 
 
     @Override public Element value(final String value)
     {
-        Iterables.removeIf(children(), Elements.byName("#text"));
-        children().add(new Text(value, this.factory));
+        checkEditable();
+        final Text text = new Text(value, this.factory, this.edit);
+        this.children.removeText();
+        this.children.add(text);
         return this;
     }
 
     @Override
     @Nonnull
     public Collection<Element> children()
+    {
+        if(this.edit != null && this.edit.isFrozen())
+        {
+            return Collections.unmodifiableList(this.children);
+        }
+        return this.children;
+    }
+
+    /**
+     * @return The children, without checking if the tree is frozen
+     */
+    List<Element> childList()
     {
         return this.children;
     }
@@ -91,21 +133,185 @@ class InternalElement extends AbstractElement implements Element
 
     @Override @Nonnull public Element attribute(final String string)
     {
-        final Optional<Element> matching = Iterables.tryFind(children(), Elements.byName("@" + string));
-        if(matching.isPresent())
+        final Element matching = this.children.attributes.get(string);
+        if(matching != null)
         {
-            return matching.get();
-        }
-        else
-        {
-            final Attribute child = new Attribute(string, null, this.factory);
-            children.add(child);
-            return child;
+            return matching;
         }
+        checkEditable();
+        // a transient tree has no null values
+        final Attribute child = new Attribute(string, this.edit == null ? null : "", this.factory, this.edit);
+        this.children.add(child);
+        return child;
     }
 
     @Override public String toString()
     {
         return name() + this.children.toString();
     }
-}
\ No newline at end of file
+
+    /**
+     * Copy a node into the transient tree of this element, unless it already
+     * belongs to it or this element is not transient. Nodes of other trees
+     * would stay mutable after the tree is frozen. Null values become empty,
+     * as for attributes created by {@link #attribute(String)}.
+     */
+    private Element adopt(final Element element)
+    {
+        if(this.edit == null || element instanceof AbstractElement && ((AbstractElement) element).edit == this.edit)
+        {
+            return element;
+        }
+        final String name = element.name();
+        if(name.startsWith("@"))
+        {
+            return new Attribute(name.substring(1), Strings.nullToEmpty(element.value()), this.factory, this.edit);
+        }
+        if("#text".equals(name))
+        {
+            return new Text(Strings.nullToEmpty(element.value()), this.factory, this.edit);
+        }
+        final InternalElement copy = new InternalElement(name, this.factory, this.edit);
+        copy.children.addAll(element.children());
+        return copy;
+    }
+
+    /**
+     * The children in document order. Every change goes through
+     * {@link #add(int, Element)} or {@link #remove(int)}, which keep the
+     * indexes up to date.
+     */
+    private final class Children extends AbstractList<Element>
+    {
+        private final List<Element> list = Lists.newArrayList();
+        /** The first attribute with each name, by the name without '@' */
+        final Map<String, Element> attributes = Maps.newLinkedHashMap();
+        int textCount = 0;
+        /** The position of the text if there is exactly one text node */
+        int textIndex = -1;
+
+        @Override
+        public Element get(final int index)
+        {
+            return this.list.get(index);
+        }
+
+        @Override
+        public int size()
+        {
+            return this.list.size();
+        }
+
+        @Override
+        public void add(final int index, final Element added)
+        {
+            final Element element = adopt(added);
+            this.list.add(index, element);
+            this.modCount++;
+            final String name = element.name();
+            if(name.startsWith("@"))
+            {
+                final String attributeName = name.substring(1);
+                if(!this.attributes.containsKey(attributeName))
+                {
+                    this.attributes.put(attributeName, element);
+                }
+            }
+            if("#text".equals(name))
+            {
+                this.textCount++;
+                this.textIndex = this.textCount == 1 ? index : -1;
+            }
+            else if(this.textCount == 1 && index <= this.textIndex)
+            {
+                this.textIndex++;
+            }
+        }
+
+        @Override
+        public Element remove(final int index)
+        {
+            final Element element = this.list.remove(index);
+            this.modCount++;
+            final String name = element.name();
+            if(name.startsWith("@"))
+            {
+                final String attributeName = name.substring(1);
+                if(this.attributes.get(attributeName) == element)
+                {
+                    this.attributes.remove(attributeName);
+                    // an attribute with the same name added later takes its place
+                    for(final Element child : this.list)
+                    {
+                        if(name.equals(child.name()))
+                        {
+                            this.attributes.put(attributeName, child);
+                            break;
+                        }
+                    }
+                }
+            }
+            if("#text".equals(name))
+            {
+                this.textCount--;
+                this.textIndex = this.textCount == 1 ? findText() : -1;
+            }
+            else if(this.textCount == 1 && index < this.textIndex)
+            {
+                this.textIndex--;
+            }
+            return element;
+        }
+
+        @Override
+        public Element set(final int index, final Element element)
+        {
+            final Element previous = remove(index);
+            add(index, element);
+            return previous;
+        }
+
+        @Override
+        public void clear()
+        {
+            this.list.clear();
+            this.modCount++;
+            this.attributes.clear();
+            this.textCount = 0;
+            this.textIndex = -1;
+        }
+
+        /**
+         * Remove all text nodes, a single text node is removed without a
+         * scan.
+         */
+        void removeText()
+        {
+            if(this.textCount == 0)
+            {
+                return;
+            }
+            if(this.textCount == 1)
+            {
+                remove(this.textIndex);
+                return;
+            }
+            Iterables.removeIf(this.list, Elements.byName("#text"));
+            this.modCount++;
+            this.textCount = 0;
+            this.textIndex = -1;
+        }
+
+        private int findText()
+        {
+            for(int i = 0; i < this.list.size(); i++)
+            {
+                if("#text".equals(this.list.get(i).name()))
+                {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
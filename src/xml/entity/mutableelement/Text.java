@@ -28,8 +28,13 @@ class Text extends AbstractElement implements Element
 
     Text(final String value, final ImmutableElementFactory factory)
     {
-        super("#text", factory);
-        this.value = value;
+        this(value, factory, null);
+    }
+
+    Text(final String value, final ImmutableElementFactory factory, @Nullable final Edit edit)
+    {
+        super("#text", factory, edit);
+        this.value = checkValue(value);
     }
 
     @Override @Nonnull public String name()
@@ -55,7 +60,8 @@ class Text extends AbstractElement implements Element
 
     @Override public Element value(final String value)
     {
-        this.value = value;
+        checkEditable();
+        this.value = checkValue(value);
         return this;
     }
 
@@ -21,6 +21,7 @@ import static xml.entity.immutableelement.ImmutableElements.byName;
 import static xml.entity.immutableelement.ImmutableElements.isText;
 
 import java.util.List;
+import java.util.Set;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -50,6 +51,8 @@ import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableList.Builder;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 
 @Immutable
 public class DefaultSelector implements Selector
@@ -218,7 +221,11 @@ public class DefaultSelector implements Selector
 
         abstract T create(ImmutableElement root, Path path, Predicate<ImmutableElement> expr, ExpectedMatches expectedMatches);
 
-        abstract void onMatch(ImmutableElement element, ReplaceVisitor visitor);
+        /**
+         * @return The replacement of a matched node, or null to remove it
+         */
+        @Nullable
+        abstract ImmutableElement apply(@Nonnull ImmutableElement element);
 
         private final class Visitor extends ReplaceVisitor
         {
@@ -235,16 +242,21 @@ public class DefaultSelector implements Selector
                 if(AbstractSelectOperation.this.expr.apply(element))
                 {
                     this.numMatches++;
-                    onMatch(element, this);
+                    replace(element, apply(element));
                 }
             }
 
             void checkMatches()
             {
-                if(!AbstractSelectOperation.this.expectedMatches.apply(this.numMatches))
-                {
-                    throw new DSLException("Expected: :" + AbstractSelectOperation.this.expectedMatches + ", acutual: " + this.numMatches);
-                }
+                AbstractSelectOperation.this.checkMatches(this.numMatches);
+            }
+        }
+
+        void checkMatches(final int numMatches)
+        {
+            if(!this.expectedMatches.apply(numMatches))
+            {
+                throw new DSLException("Expected: :" + this.expectedMatches + ", acutual: " + numMatches);
             }
         }
 
@@ -280,14 +292,14 @@ public class DefaultSelector implements Selector
         }
 
         @Override
-        public void onMatch(final ImmutableElement element, final ReplaceVisitor visitor)
+        ImmutableElement apply(final ImmutableElement element)
         {
             ImmutableElement copy = element;
             for(final UpdateOperation op : this.ops)
             {
                 copy = op.apply(copy);
             }
-            visitor.replace(element, copy);
+            return copy;
         }
 
         @Override
@@ -338,14 +350,13 @@ public class DefaultSelector implements Selector
             this.nodes = nodes;
         }
         @Override
-        public void onMatch(final ImmutableElement element, final ReplaceVisitor visitor)
+        ImmutableElement apply(final ImmutableElement element)
         {
             final Builder<ImmutableElement> children = ImmutableList.builder();
             children
                     .addAll(element.children())
                     .addAll(this.nodes);
-            final ImmutableElement copy = DefaultSelector.this.factory.createNode(element.name(), children.build());
-            visitor.replace(element, copy);
+            return DefaultSelector.this.factory.createNode(element.name(), children.build());
         }
         @Override
         public InsertInto values(final ImmutableElement value)
@@ -380,9 +391,9 @@ public class DefaultSelector implements Selector
             super(element, parsed, expr, expectedMatches);
         }
         @Override
-        public void onMatch(final ImmutableElement element, final ReplaceVisitor visitor)
+        ImmutableElement apply(final ImmutableElement element)
         {
-            visitor.replace(element, null);
+            return null;
         }
 
         @Override
@@ -392,6 +403,131 @@ public class DefaultSelector implements Selector
         }
     }
 
+    /**
+     * A statement of a transaction and the rest of its path.
+     */
+    private static final class ActivePath
+    {
+        final int statement;
+        final Path path;
+
+        ActivePath(final int statement, final Path path)
+        {
+            this.statement = statement;
+            this.path = path;
+        }
+    }
+
+    private final class TransactionImpl implements DSL.Transaction
+    {
+        private final ImmutableElement root;
+        private final ImmutableList<AbstractSelectOperation<?>> statements;
+
+        TransactionImpl(final ImmutableElement root, final ImmutableList<AbstractSelectOperation<?>> statements)
+        {
+            this.root = root;
+            this.statements = statements;
+        }
+
+        @Override
+        @Nonnull
+        public DSL.Transaction with(@Nonnull final WithWhere<?> statement)
+        {
+            Preconditions.checkArgument(statement instanceof AbstractSelectOperation, "not a statement of this selector: %s", statement);
+            final AbstractSelectOperation<?> operation = (AbstractSelectOperation<?>) statement;
+            Preconditions.checkArgument(operation.getRoot() == this.root, "the statement was created from another element");
+            final Builder<AbstractSelectOperation<?>> builder = ImmutableList.builder();
+            builder.addAll(this.statements).add(operation);
+            return new TransactionImpl(this.root, builder.build());
+        }
+
+        @Override
+        @Nonnull
+        public ImmutableElement element()
+        {
+            final int[] numMatches = new int[this.statements.size()];
+            final ReplaceVisitor visitor = new ReplaceVisitor(factory);
+            final ImmutableList.Builder<ActivePath> paths = ImmutableList.builder();
+            for(int i = 0; i < this.statements.size(); i++)
+            {
+                paths.add(new ActivePath(i, this.statements.get(i).getPath()));
+            }
+            select(paths.build(), this.root, visitor, numMatches);
+            for(int i = 0; i < this.statements.size(); i++)
+            {
+                this.statements.get(i).checkMatches(numMatches[i]);
+            }
+            return visitor.element();
+        }
+
+        /**
+         * Follow the paths of all statements at once, a node is visited once
+         * no matter how many paths lead to it.
+         */
+        private void select(final List<ActivePath> paths, final ImmutableElement current, final ReplaceVisitor visitor, final int[] numMatches)
+        {
+            visitor.enterChild(current);
+            final List<ActivePath> next = Lists.newArrayList();
+            final Set<String> names = Sets.newLinkedHashSet();
+            boolean allChildren = false;
+            ImmutableElement replacement = current;
+            boolean replaced = false;
+            for(final ActivePath active : paths)
+            {
+                if(!active.path.head().apply(current))
+                {
+                    continue;
+                }
+                final Path tail = active.path.tail();
+                if(tail.isEmpty())
+                {
+                    final AbstractSelectOperation<?> statement = this.statements.get(active.statement);
+                    if(statement.getExpr().apply(current))
+                    {
+                        numMatches[active.statement]++;
+                        if(replacement != null)
+                        {
+                            replacement = statement.apply(replacement);
+                            replaced = true;
+                        }
+                    }
+                }
+                else
+                {
+                    next.add(new ActivePath(active.statement, tail));
+                    final String name = tail.head().name();
+                    allChildren |= name == null;
+                    names.add(name);
+                }
+            }
+            if(replaced)
+            {
+                visitor.replace(current, replacement);
+            }
+            if(!next.isEmpty())
+            {
+                if(allChildren)
+                {
+                    for(final ImmutableElement child : current.children())
+                    {
+                        select(next, child, visitor, numMatches);
+                    }
+                }
+                else
+                {
+                    for(final String name : names)
+                    {
+                        for(final ImmutableElement child : current.children(name))
+                        {
+                            select(next, child, visitor, numMatches);
+                        }
+                    }
+                }
+            }
+            visitor.leaveChild(current);
+        }
+    }
+
     void select(final Path path, final ImmutableElement current, final SelectionVisitor visitor)
     {
         visitor.enterChild(current);
@@ -405,7 +541,9 @@ public class DefaultSelector implements Selector
             }
             else
             {
-                for(final ImmutableElement child : current.children())
+                // only children with the name of the next segment can match
+                final String name = tail.head().name();
+                for(final ImmutableElement child : name == null ? current.children() : current.children(name))
                 {
                     select(tail, child, visitor);
                 }
@@ -469,6 +607,14 @@ public class DefaultSelector implements Selector
         };
     }
 
+    @Override
+    @Nonnull
+    public DSL.Transaction createTransaction(@Nonnull final ImmutableElement element)
+    {
+        final ImmutableList<AbstractSelectOperation<?>> statements = ImmutableList.of();
+        return new TransactionImpl(element, statements);
+    }
+
     @Override
     @Nonnull
     public DSL.Delete createDelete(@Nonnull final ImmutableElement element)
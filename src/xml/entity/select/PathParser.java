@@ -54,15 +54,19 @@ public class PathParser
     static class PathExpr implements Predicate<ImmutableElement>
 	{
         final Predicate<ImmutableElement> namePredicate;
+        /** The name to match, null for '*' */
+        @Nullable final String name;
         final ImmutableList<Predicate<ImmutableElement>> subExprs;
 		final boolean marked;
 
         public PathExpr(
                 final Predicate<ImmutableElement> namePredicate,
+                @Nullable final String name,
                 final ImmutableList<Predicate<ImmutableElement>> subExprs, final boolean marked)
 		{
 			super();
 			this.namePredicate = namePredicate;
+			this.name = name;
 			this.subExprs = subExprs;
 			this.marked = marked;
 		}
@@ -82,6 +86,15 @@ public class PathParser
 		{
 			return marked;
 		}
+
+        /**
+         * @return The name of the matched nodes, or null if any name matches
+         */
+        @Nullable
+        public String name()
+        {
+            return name;
+        }
 	}
 
     private static Predicate<ImmutableElement> starExpr = new Predicate<ImmutableElement>() {
@@ -198,7 +211,8 @@ public class PathParser
 		
 		@Override public PathExpr apply(@Nullable final String subPath)
 		{
-            final Predicate<ImmutableElement> namePred = extractPathExpr(subPath);
+            final String name = extractName(subPath);
+            final Predicate<ImmutableElement> namePred = name == null ? starExpr : ImmutableElements.byName(name);
 
             final Iterable<Predicate<ImmutableElement>> attrExprs = extractAttrExprs(subPath);
             final Iterable<Predicate<ImmutableElement>> textExprs = extractTextExprs(subPath);
@@ -206,22 +220,26 @@ public class PathParser
             final Builder<Predicate<ImmutableElement>> builder = ImmutableList.builder();
 			builder.addAll(toChildExprs(attrExprs));
 			builder.addAll(toChildExprs(textExprs));
-			return new PathExpr(namePred, builder.build(), subPath.startsWith("!"));
+			return new PathExpr(namePred, name, builder.build(), subPath.startsWith("!"));
 		}
 	};
 
 	private static final Pattern childSelectionPattern = Pattern.compile("!?([^#@]+).*");
 	private static final Pattern childSelectionStarPattern = Pattern.compile("\\*.*");
-    private static Predicate<ImmutableElement> extractPathExpr(final String subPath)
+    /**
+     * @return The node name, or null for '*'
+     */
+    @Nullable
+    private static String extractName(final String subPath)
 	{
 		if(childSelectionStarPattern.matcher(subPath).matches())
 		{
-			return starExpr;
+			return null;
 		}
 		final Matcher matcher = childSelectionPattern.matcher(subPath);
 		if(matcher.matches())
 		{
-			return ImmutableElements.byName(matcher.group(1));
+			return matcher.group(1);
 		}
 		else
 		{
@@ -286,6 +304,10 @@ public class PathParser
             @Override
             public Predicate<ImmutableElement> apply(@Nullable final Predicate<ImmutableElement> input)
 			{
+                if(input instanceof AttrExpr)
+                {
+                    return ImmutableElements.hasChild(((AttrExpr) input).name, input);
+                }
 				return ImmutableElements.hasChild(input);
 			}
 		}));
@@ -30,4 +30,6 @@ public interface Selector
     DSL.Update createUpdate(@Nonnull ImmutableElement element);
     @Nonnull
     DSL.Delete createDelete(@Nonnull ImmutableElement element);
+    @Nonnull
+    DSL.Transaction createTransaction(@Nonnull ImmutableElement element);
 }
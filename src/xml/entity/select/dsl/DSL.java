@@ -174,6 +174,38 @@ public interface DSL
         }
     }
     
+    /**
+     * Apply several update, insert and delete statements in one traversal.
+     * Every statement selects its nodes from the original element, so the
+     * statements do not see the changes of each other. If several statements
+     * match the same node they are applied in the order they were added, a
+     * deleted node is not changed any further.
+     */
+    public interface Transaction
+    {
+        /**
+         * Add a statement. The expected matches of each statement are checked
+         * when the transaction is executed.
+         * 
+         * @param statement
+         *            An update, insert or delete statement created from the
+         *            element the transaction was started on
+         * @return The next state of the transaction
+         * @throws IllegalArgumentException
+         *             If the statement was created from another element
+         */
+        @Nonnull
+        Transaction with(@Nonnull WithWhere<?> statement);
+
+        /**
+         * Execute all statements.
+         * 
+         * @return The updated state of the element
+         */
+        @Nonnull
+        ImmutableElement element();
+    }
+
     public interface Join
     {
     	/**
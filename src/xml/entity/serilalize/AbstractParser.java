@@ -0,0 +1,180 @@
+/*
+ * Copyright 2013 Christof Lemke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xml.entity.serilalize;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+
+import javax.annotation.Nonnull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import xml.entity.immutableelement.ImmutableElement;
+import xml.entity.immutableelement.ImmutableElementFactory;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Implements the {@link Parser} operations on top of a parser engine that
+ * reports the document content to an {@link ElementSink}.
+ */
+abstract class AbstractParser implements Parser
+{
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final ImmutableElementFactory factory;
+    private final Projection projection;
+    private final WhitespacePolicy whitespace;
+    private final DocumentStorage storage;
+
+    AbstractParser(
+            @Nonnull final ImmutableElementFactory factory,
+            @Nonnull final Projection projection,
+            @Nonnull final WhitespacePolicy whitespace,
+            @Nonnull final DocumentStorage storage)
+    {
+        this.factory = factory;
+        this.projection = projection;
+        this.whitespace = whitespace;
+        this.storage = storage;
+    }
+
+    /**
+     * Create a parser using the same engine with different settings.
+     */
+    abstract AbstractParser copy(
+            @Nonnull ImmutableElementFactory factory,
+            @Nonnull Projection projection,
+            @Nonnull WhitespacePolicy whitespace,
+            @Nonnull DocumentStorage storage);
+
+    /**
+     * @return The policy the engine applies to text
+     */
+    @Nonnull
+    WhitespacePolicy whitespace()
+    {
+        return this.whitespace;
+    }
+
+    /**
+     * Report the content of the document to the sink.
+     */
+    abstract void parse(@Nonnull Reader reader, @Nonnull ElementSink sink) throws IOException;
+
+    /**
+     * Report the content of the document to the sink. The encoding is detected
+     * by the engine.
+     */
+    abstract void parse(@Nonnull InputStream stream, @Nonnull ElementSink sink) throws IOException;
+
+    @Override
+    public ImmutableElement parse(final Reader reader) throws IOException
+    {
+        final DocumentBuilder builder = this.storage.builder(this.factory);
+        parse(reader, this.projection.project(builder));
+        this.logger.debug("root: {}", builder.root());
+        return builder.root();
+    }
+
+    @Override
+    public ImmutableElement parse(final InputStream stream) throws IOException
+    {
+        final DocumentBuilder builder = this.storage.builder(this.factory);
+        parse(stream, this.projection.project(builder));
+        this.logger.debug("root: {}", builder.root());
+        return builder.root();
+    }
+
+    @Override
+    public ImmutableElement parse(final ByteBuffer buffer)
+    {
+        try
+        {
+            return parse(new ByteBufferInputStream(buffer));
+        }
+        catch(final IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public ImmutableElement parse(final File file) throws IOException
+    {
+        final FileInputStream fileStream = new FileInputStream(file);
+        final MappedFileInputStream stream;
+        try
+        {
+            stream = new MappedFileInputStream(fileStream.getChannel());
+        }
+        catch(final IOException e)
+        {
+            fileStream.close();
+            throw e;
+        }
+        try
+        {
+            return parse(stream);
+        }
+        finally
+        {
+            stream.close();
+        }
+    }
+
+    @Override
+    public ImmutableElement parse(final String string)
+    {
+        try
+        {
+            return parse(new StringReader(string));
+        }
+        catch(final IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void stream(final Reader reader, final String path, final RecordHandler handler) throws IOException
+    {
+        parse(reader, this.projection.project(new RecordSplitter(RecordPath.parse(path), this.factory, handler)));
+    }
+
+    @Override
+    public Parser project(final String... paths)
+    {
+        return copy(this.factory, Projection.of(paths), this.whitespace, this.storage);
+    }
+
+    @Override
+    public Parser withWhitespacePolicy(final WhitespacePolicy policy)
+    {
+        return copy(this.factory, this.projection, Preconditions.checkNotNull(policy), this.storage);
+    }
+
+    @Override
+    public Parser withStorage(final DocumentStorage storage)
+    {
+        return copy(this.factory, this.projection, this.whitespace, Preconditions.checkNotNull(storage));
+    }
+}
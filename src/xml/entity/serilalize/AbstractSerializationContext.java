@@ -0,0 +1,72 @@
+/*
+ * Copyright 2013 Christof Lemke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xml.entity.serilalize;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+import javax.xml.stream.XMLStreamException;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Implements the targets of a {@link SerializationContext} in terms of
+ * {@link #toWriter(java.io.Writer)} and
+ * {@link #toStream(java.io.OutputStream, java.nio.charset.Charset)}.
+ */
+abstract class AbstractSerializationContext implements SerializationContext
+{
+    @Override
+    public void toChannel(final WritableByteChannel channel) throws XMLStreamException, IOException
+    {
+        toStream(Channels.newOutputStream(channel), Charsets.UTF_8);
+    }
+
+    @Override
+    public ImmutableList<ByteBuffer> toByteBuffers() throws XMLStreamException
+    {
+        final ByteBufferOutputStream stream = new ByteBufferOutputStream();
+        try
+        {
+            toStream(stream, Charsets.UTF_8);
+        }
+        catch(final IOException e)
+        {
+            // the stream does not throw
+            throw new XMLStreamException(e);
+        }
+        return stream.buffers();
+    }
+
+    @Override
+    public String toString()
+    {
+        final StringWriter writer = new StringWriter();
+        try
+        {
+            toWriter(writer);
+        }
+        catch(final XMLStreamException e)
+        {
+            throw new RuntimeException(e);
+        }
+        return writer.toString();
+    }
+}
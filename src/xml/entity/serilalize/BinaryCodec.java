@@ -0,0 +1,360 @@
+/*
+ * Copyright 2013 Christof Lemke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xml.entity.serilalize;
+
+import static xml.entity.serilalize.BinaryFormat.varintSize;
+import static xml.entity.serilalize.BinaryFormat.writeVarint;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+import xml.entity.immutableelement.ImmutableElement;
+import xml.entity.immutableelement.ImmutableElementFactory;
+import xml.entity.immutableelement.NodeKind;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.ByteStreams;
+
+/**
+ * Writes and reads trees in a compact binary format. Each document starts with
+ * a dictionary of the element and attribute names, nodes refer to names by
+ * index and are tagged with their kind. Use this format to keep trees between
+ * processing steps, it is much smaller and faster than XML.
+ */
+@ThreadSafe
+public final class BinaryCodec
+{
+    private final ImmutableElementFactory factory;
+
+    private BinaryCodec(final ImmutableElementFactory factory)
+    {
+        this.factory = Preconditions.checkNotNull(factory);
+    }
+
+    /**
+     * @param factory
+     *            Creates the elements that are read
+     * @return A new codec
+     */
+    @Nonnull
+    public static BinaryCodec create(@Nonnull final ImmutableElementFactory factory)
+    {
+        return new BinaryCodec(factory);
+    }
+
+    /**
+     * Write the element and all descendants.
+     * 
+     * @param element
+     *            The root element
+     * @param stream
+     *            The target, it is not closed
+     */
+    public void write(@Nonnull final ImmutableElement element, @Nonnull final OutputStream stream) throws IOException
+    {
+        final Encoder encoder = new Encoder();
+        encoder.measure(element);
+        final Utf8Output output = new Utf8Output(stream);
+        encoder.write(output, element);
+        output.flush();
+    }
+
+    /**
+     * @param element
+     *            The root element
+     * @return The encoded element and all descendants
+     */
+    @Nonnull
+    public byte[] toByteArray(@Nonnull final ImmutableElement element)
+    {
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        try
+        {
+            write(element, stream);
+        }
+        catch(final IOException e)
+        {
+            // the stream does not throw
+            throw new RuntimeException(e);
+        }
+        return stream.toByteArray();
+    }
+
+    /**
+     * Read a document written by {@link #write(ImmutableElement, OutputStream)}
+     * .
+     * 
+     * @param stream
+     *            The source, it is read to the end but not closed
+     * @return The root element
+     */
+    @Nonnull
+    public ImmutableElement read(@Nonnull final InputStream stream) throws IOException
+    {
+        return read(ByteStreams.toByteArray(stream));
+    }
+
+    /**
+     * Read a document written by {@link #toByteArray(ImmutableElement)}.
+     * 
+     * @param bytes
+     *            The encoded document
+     * @return The root element
+     */
+    @Nonnull
+    public ImmutableElement read(@Nonnull final byte[] bytes)
+    {
+        return new Decoder(bytes).readDocument();
+    }
+
+    /**
+     * Writes a tree in two passes. The first pass collects the names and the
+     * content length of the elements in document order, the second pass writes
+     * the nodes.
+     */
+    private static final class Encoder
+    {
+        private final Map<String, Integer> names = Maps.newHashMap();
+        private final List<String> nameList = Lists.newArrayList();
+        private long[] contentLengths = new long[64];
+        private int elementCount = 0;
+        private int written = 0;
+
+        /**
+         * @return The encoded length of the node
+         */
+        long measure(final ImmutableElement node)
+        {
+            if(node.kind() == NodeKind.ATTRIBUTE)
+            {
+                final int length = Utf8Output.utf8Length(node.value(), 0);
+                return 1 + varintSize(nameIndex(node.name())) + varintSize(length) + length;
+            }
+            if(node.kind() == NodeKind.TEXT)
+            {
+                final int length = Utf8Output.utf8Length(node.value(), 0);
+                return 1 + varintSize(length) + length;
+            }
+            final int index = this.elementCount++;
+            if(index == this.contentLengths.length)
+            {
+                this.contentLengths = Arrays.copyOf(this.contentLengths, index * 2);
+            }
+            final int name = nameIndex(node.name());
+            long contentLength = 0;
+            for(final ImmutableElement child : node.children())
+            {
+                contentLength += measure(child);
+            }
+            this.contentLengths[index] = contentLength;
+            return 1 + varintSize(name) + varintSize(node.children().size()) + varintSize(contentLength) + contentLength;
+        }
+
+        void write(final Utf8Output output, final ImmutableElement root) throws IOException
+        {
+            output.writeBytes(BinaryFormat.MAGIC);
+            output.writeByte(BinaryFormat.VERSION);
+            writeVarint(output, this.nameList.size());
+            for(final String name : this.nameList)
+            {
+                writeString(output, name);
+            }
+            writeNode(output, root);
+        }
+
+        private void writeNode(final Utf8Output output, final ImmutableElement node) throws IOException
+        {
+            if(node.kind() == NodeKind.ATTRIBUTE)
+            {
+                output.writeByte(BinaryFormat.ATTRIBUTE);
+                writeVarint(output, this.names.get(node.name()));
+                writeString(output, node.value());
+            }
+            else if(node.kind() == NodeKind.TEXT)
+            {
+                output.writeByte(BinaryFormat.TEXT);
+                writeString(output, node.value());
+            }
+            else
+            {
+                output.writeByte(BinaryFormat.ELEMENT);
+                writeVarint(output, this.names.get(node.name()));
+                writeVarint(output, node.children().size());
+                writeVarint(output, this.contentLengths[this.written++]);
+                for(final ImmutableElement child : node.children())
+                {
+                    writeNode(output, child);
+                }
+            }
+        }
+
+        private static void writeString(final Utf8Output output, final String value) throws IOException
+        {
+            writeVarint(output, Utf8Output.utf8Length(value, 0));
+            output.writeName(value, 0);
+        }
+
+        private int nameIndex(final String name)
+        {
+            final Integer index = this.names.get(name);
+            if(index != null)
+            {
+                return index;
+            }
+            this.names.put(name, this.nameList.size());
+            this.nameList.add(name);
+            return this.nameList.size() - 1;
+        }
+    }
+
+    /**
+     * Checks every read against the length of the input, counts are checked
+     * against the remaining bytes before arrays are allocated for them.
+     */
+    private final class Decoder
+    {
+        private final byte[] bytes;
+        private int position = 0;
+        /** The names as the factory expects them, attribute names without '@' */
+        private String[] names;
+
+        Decoder(final byte[] bytes)
+        {
+            this.bytes = bytes;
+        }
+
+        ImmutableElement readDocument()
+        {
+            for(final byte b : BinaryFormat.MAGIC)
+            {
+                Preconditions.checkArgument(readByte() == b, "not a binary document");
+            }
+            final byte version = readByte();
+            Preconditions.checkArgument(version == BinaryFormat.VERSION, "unsupported version %s", version);
+            // a name takes at least its length
+            this.names = new String[readCount(1)];
+            for(int i = 0; i < this.names.length; i++)
+            {
+                final String name = readString();
+                this.names[i] = name.startsWith("@") ? name.substring(1) : name;
+            }
+            return readNode();
+        }
+
+        private ImmutableElement readNode()
+        {
+            final byte tag = readByte();
+            switch(tag)
+            {
+                case BinaryFormat.ELEMENT:
+                    final String name = readName();
+                    // a child takes at least a tag and a length
+                    final ImmutableElement[] children = new ImmutableElement[readCount(2)];
+                    // the content length is only needed to skip the element
+                    readVarint();
+                    for(int i = 0; i < children.length; i++)
+                    {
+                        children[i] = readNode();
+                    }
+                    return BinaryCodec.this.factory.createNode(name, ImmutableList.copyOf(children));
+                case BinaryFormat.ATTRIBUTE:
+                    final String attributeName = readName();
+                    return BinaryCodec.this.factory.createAttr(attributeName, readString());
+                case BinaryFormat.TEXT:
+                    return BinaryCodec.this.factory.createText(readString());
+                default:
+                    throw new IllegalArgumentException("unknown node kind " + tag + " at " + (this.position - 1));
+            }
+        }
+
+        private String readString()
+        {
+            final int length = readInt();
+            if(length > this.bytes.length - this.position)
+            {
+                throw new IllegalArgumentException("truncated document");
+            }
+            final String value = new String(this.bytes, this.position, length, Charsets.UTF_8);
+            this.position += length;
+            return value;
+        }
+
+        private String readName()
+        {
+            final int index = readInt();
+            Preconditions.checkArgument(index < this.names.length, "unknown name %s at %s", index, this.position);
+            return this.names[index];
+        }
+
+        /**
+         * @param minimumBytes
+         *            The least number of bytes each of the counted items takes
+         * @return A count that fits into the remaining bytes
+         */
+        private int readCount(final int minimumBytes)
+        {
+            final int count = readInt();
+            if(count > (this.bytes.length - this.position) / minimumBytes)
+            {
+                throw new IllegalArgumentException("truncated document");
+            }
+            return count;
+        }
+
+        private byte readByte()
+        {
+            if(this.position == this.bytes.length)
+            {
+                throw new IllegalArgumentException("truncated document");
+            }
+            return this.bytes[this.position++];
+        }
+
+        private int readInt()
+        {
+            final long value = readVarint();
+            Preconditions.checkArgument(value >= 0 && value <= Integer.MAX_VALUE, "value out of range: %s", value);
+            return (int) value;
+        }
+
+        private long readVarint()
+        {
+            long value = 0;
+            for(int shift = 0; shift < 64; shift += 7)
+            {
+                final byte b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if((b & 0x80) == 0)
+                {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("malformed varint");
+        }
+    }
+}
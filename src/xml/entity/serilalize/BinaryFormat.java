@@ -0,0 +1,72 @@
+/*
+ * Copyright 2013 Christof Lemke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xml.entity.serilalize;
+
+import java.io.IOException;
+
+/**
+ * Constants and varints of the binary document format written by
+ * {@link BinaryCodec}.
+ * 
+ * <pre>
+ * document  := MAGIC VERSION varint(nameCount) name* node
+ * name      := varint(length) utf8
+ * node      := ELEMENT varint(name) varint(childCount) varint(contentLength) node*
+ *            | ATTRIBUTE varint(name) varint(length) utf8
+ *            | TEXT varint(length) utf8
+ * </pre>
+ * 
+ * Names are indexes into the name dictionary, attribute names are stored with
+ * their '@'. The content length is the number of bytes of the children, so a
+ * reader can skip a subtree. Varints are unsigned LEB128.
+ */
+final class BinaryFormat
+{
+    static final byte[] MAGIC = { 'X', 'E', 'B' };
+    static final byte VERSION = 1;
+
+    static final byte ELEMENT = 1;
+    static final byte ATTRIBUTE = 2;
+    static final byte TEXT = 3;
+
+    private BinaryFormat()
+    {
+    }
+
+    /**
+     * @return The number of bytes of the varint
+     */
+    static int varintSize(final long value)
+    {
+        int size = 1;
+        for(long rest = value >>> 7; rest != 0; rest >>>= 7)
+        {
+            size++;
+        }
+        return size;
+    }
+
+    static void writeVarint(final Utf8Output output, final long value) throws IOException
+    {
+        long rest = value;
+        while((rest & ~0x7FL) != 0)
+        {
+            output.writeByte((int) (rest & 0x7F | 0x80));
+            rest >>>= 7;
+        }
+        output.writeByte((int) rest);
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2013 Christof Lemke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xml.entity.serilalize;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Collects the written bytes in direct buffers of {@link #CHUNK_SIZE} bytes.
+ */
+final class ByteBufferOutputStream extends OutputStream
+{
+    static final int CHUNK_SIZE = 64 * 1024;
+
+    private final ImmutableList.Builder<ByteBuffer> buffers = ImmutableList.builder();
+    private ByteBuffer current = null;
+
+    @Override
+    public void write(final int b)
+    {
+        if(this.current == null || !this.current.hasRemaining())
+        {
+            next();
+        }
+        this.current.put((byte) b);
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len)
+    {
+        int offset = off;
+        int remaining = len;
+        while(remaining > 0)
+        {
+            if(this.current == null || !this.current.hasRemaining())
+            {
+                next();
+            }
+            final int count = Math.min(remaining, this.current.remaining());
+            this.current.put(b, offset, count);
+            offset += count;
+            remaining -= count;
+        }
+    }
+
+    /**
+     * @return The filled buffers, flipped for reading
+     */
+    ImmutableList<ByteBuffer> buffers()
+    {
+        if(this.current != null)
+        {
+            this.current.flip();
+            this.buffers.add(this.current);
+            this.current = null;
+        }
+        return this.buffers.build();
+    }
+
+    private void next()
+    {
+        if(this.current != null)
+        {
+            this.current.flip();
+            this.buffers.add(this.current);
+        }
+        this.current = ByteBuffer.allocateDirect(CHUNK_SIZE);
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2013 Christof Lemke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xml.entity.serilalize;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import xml.entity.immutableelement.AbstractElementView;
+import xml.entity.immutableelement.ImmutableElement;
+
+import com.google.common.cache.Cache;
+
+/**
+ * Collects the output in memory. The encoding of every subtree below the root
+ * that is at least {@link CachingSerializerImpl#MIN_CACHED_BYTES} and at most
+ * the given maximum long is put into the cache, cached subtrees are copied
+ * instead of being encoded again. The root and the large elements near it are
+ * replaced by every update, caching them would only hold further copies of the
+ * document.
+ */
+final class CachingOutput implements XmlOutput
+{
+    private final Utf8Output output = new Utf8Output();
+    private final Cache<ImmutableElement, byte[]> cache;
+    private final int minCachedBytes;
+    private final int maxCachedBytes;
+    /** The start positions of the open elements */
+    private int[] starts = new int[16];
+    private int depth = 0;
+
+    CachingOutput(final Cache<ImmutableElement, byte[]> cache, final int minCachedBytes, final int maxCachedBytes)
+    {
+        this.cache = cache;
+        this.minCachedBytes = minCachedBytes;
+        this.maxCachedBytes = maxCachedBytes;
+    }
+
+    @Override
+    public void writeMarkup(final char c) throws IOException
+    {
+        this.output.writeMarkup(c);
+    }
+
+    @Override
+    public void writeName(final String name, final int start) throws IOException
+    {
+        this.output.writeName(name, start);
+    }
+
+    @Override
+    public void writeEscaped(final String value, final boolean attribute) throws IOException
+    {
+        this.output.writeEscaped(value, attribute);
+    }
+
+    @Override
+    public boolean writeCached(final ImmutableElement element) throws IOException
+    {
+        final byte[] cached = isCacheable(element) ? this.cache.getIfPresent(element) : null;
+        if(cached != null)
+        {
+            this.output.writeBytes(cached);
+            return true;
+        }
+        if(this.depth == this.starts.length)
+        {
+            this.starts = Arrays.copyOf(this.starts, this.depth * 2);
+        }
+        this.starts[this.depth++] = this.output.position();
+        return false;
+    }
+
+    @Override
+    public void elementWritten(final ImmutableElement element)
+    {
+        final int start = this.starts[--this.depth];
+        final int length = this.output.position() - start;
+        if(this.depth > 0 && length >= this.minCachedBytes && length <= this.maxCachedBytes && isCacheable(element))
+        {
+            this.cache.put(element, this.output.copyFrom(start));
+        }
+    }
+
+    /**
+     * The cache compares its weak keys by identity. Views of stored documents
+     * are new instances on every access, they would never be found again.
+     */
+    private static boolean isCacheable(final ImmutableElement element)
+    {
+        return !(element instanceof AbstractElementView);
+    }
+
+    @Override
+    public void flush()
+    {
+    }
+
+    Utf8Output output()
+    {
+        return this.output;
+    }
+}
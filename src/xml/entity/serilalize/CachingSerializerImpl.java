@@ -0,0 +1,84 @@
+/*
+ * Copyright 2013 Christof Lemke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xml.entity.serilalize;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import xml.entity.immutableelement.ImmutableElement;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+
+/**
+ * A {@link Utf8SerializerImpl} that keeps the UTF-8 encoding of subtrees.
+ * Since an update only replaces the nodes on the path to the changed node, a
+ * new version of a document mostly consists of subtrees that have been
+ * serialized before, their bytes are copied from the cache. The cache holds
+ * the elements weakly and is bounded by the number of cached bytes. Only UTF-8
+ * output to a stream uses the cache, the whole document is encoded in memory
+ * before it is written. Only trees of objects are cached, the nodes of packed,
+ * mapped and frozen documents are views that are created on access and are
+ * encoded every time.
+ */
+@ThreadSafe
+class CachingSerializerImpl extends Utf8SerializerImpl
+{
+    /** Smaller subtrees are cheaper to encode than to look up */
+    static final int MIN_CACHED_BYTES = 256;
+    private static final int CONCURRENCY_LEVEL = 4;
+    /** The largest entry may take this fraction of the weight of a segment */
+    private static final int MAX_ENTRY_FRACTION = 8;
+
+    private final Cache<ImmutableElement, byte[]> cache;
+    private final int maxCachedBytes;
+
+    CachingSerializerImpl(final long maximumBytes)
+    {
+        Preconditions.checkArgument(maximumBytes > 0, "maximumBytes must be positive");
+        this.cache = CacheBuilder.newBuilder()
+                .weakKeys()
+                .concurrencyLevel(CONCURRENCY_LEVEL)
+                .maximumWeight(maximumBytes)
+                .weigher(new Weigher<ImmutableElement, byte[]>()
+                {
+                    @Override
+                    public int weigh(final ImmutableElement key, final byte[] value)
+                    {
+                        return value.length;
+                    }
+                })
+                .build();
+        this.maxCachedBytes = (int) Math.min(Integer.MAX_VALUE, maximumBytes / CONCURRENCY_LEVEL / MAX_ENTRY_FRACTION);
+    }
+
+    public static Serializer create(final long maximumBytes)
+    {
+        return new CachingSerializerImpl(maximumBytes);
+    }
+
+    @Override
+    void encode(final ImmutableElement element, final OutputStream stream) throws IOException
+    {
+        final CachingOutput output = new CachingOutput(this.cache, MIN_CACHED_BYTES, this.maxCachedBytes);
+        write(output, element);
+        output.output().writeTo(stream);
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2013 Christof Lemke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xml.entity.serilalize;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import xml.entity.immutableelement.ImmutableElement;
+
+/**
+ * Buffers the output in a char array which is passed on to a {@link Writer}
+ * when it is full. Like the JDK writer, characters that the encoding of an
+ * {@link OutputStreamWriter} can not encode are written as character
+ * references.
+ */
+final class CharOutput implements XmlOutput
+{
+    private static final int BUFFER_SIZE = 4096;
+    /** The most chars a single char is escaped to, "&quot;" */
+    private static final int MAX_CHAR_LENGTH = 6;
+
+    private final Writer target;
+    @Nullable private final CharsetEncoder encoder;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position = 0;
+
+    CharOutput(@Nonnull final Writer target)
+    {
+        this.target = target;
+        if(target instanceof OutputStreamWriter)
+        {
+            this.encoder = Charset.forName(((OutputStreamWriter) target).getEncoding()).newEncoder();
+        }
+        else
+        {
+            this.encoder = null;
+        }
+    }
+
+    @Override
+    public void writeMarkup(final char c) throws IOException
+    {
+        require(1);
+        this.buffer[this.position++] = c;
+    }
+
+    @Override
+    public void writeName(final String name, final int start) throws IOException
+    {
+        int from = start;
+        while(from < name.length())
+        {
+            require(1);
+            final int count = Math.min(name.length() - from, this.buffer.length - this.position);
+            name.getChars(from, from + count, this.buffer, this.position);
+            this.position += count;
+            from += count;
+        }
+    }
+
+    @Override
+    public void writeEscaped(final String value, final boolean attribute) throws IOException
+    {
+        final int length = value.length();
+        for(int i = 0; i < length; i++)
+        {
+            require(MAX_CHAR_LENGTH);
+            final char c = value.charAt(i);
+            if(c >= 0x80 && this.encoder != null && !this.encoder.canEncode(c))
+            {
+                i = writeReference(value, i);
+                continue;
+            }
+            switch(c)
+            {
+                case '&':
+                    writeEntity("&amp;");
+                    break;
+                case '<':
+                    writeEntity("&lt;");
+                    break;
+                case '>':
+                    writeEntity("&gt;");
+                    break;
+                case '"':
+                    if(attribute)
+                    {
+                        writeEntity("&quot;");
+                    }
+                    else
+                    {
+                        this.buffer[this.position++] = c;
+                    }
+                    break;
+                default:
+                    this.buffer[this.position++] = c;
+            }
+        }
+    }
+
+    @Override
+    public boolean writeCached(final ImmutableElement element)
+    {
+        return false;
+    }
+
+    @Override
+    public void elementWritten(final ImmutableElement element)
+    {
+    }
+
+    @Override
+    public void flush() throws IOException
+    {
+        this.target.write(this.buffer, 0, this.position);
+        this.position = 0;
+        this.target.flush();
+    }
+
+    private void writeEntity(final String entity)
+    {
+        entity.getChars(0, entity.length(), this.buffer, this.position);
+        this.position += entity.length();
+    }
+
+    /**
+     * Write the character at index i, or the surrogate pair starting at i, as
+     * a character reference.
+     * 
+     * @return The index of the last character that was written
+     */
+    private int writeReference(final String value, final int i) throws IOException
+    {
+        final char c = value.charAt(i);
+        final int last;
+        final int codePoint;
+        if(Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1)))
+        {
+            codePoint = Character.toCodePoint(c, value.charAt(i + 1));
+            last = i + 1;
+        }
+        else
+        {
+            codePoint = c;
+            last = i;
+        }
+        final String reference = "&#x" + Integer.toHexString(codePoint) + ";";
+        require(reference.length());
+        writeEntity(reference);
+        return last;
+    }
+
+    private void require(final int count) throws IOException
+    {
+        if(this.position + count > this.buffer.length)
+        {
+            this.target.write(this.buffer, 0, this.position);
+            this.position = 0;
+        }
+    }
+}
@@ -40,17 +40,44 @@ public class DefaultServiceContext implements ServiceContext
         this.mutableFactory = mutableFactory;
     }
 
-    private DefaultServiceContext()
+    private DefaultServiceContext(final ParserEngine engine, final Serializer serializer)
     {
         this.factory = ImmutableElementFactory.create();
-        this.parser = ParserImpl.create(this.factory);
-        this.serializer = SerializerImpl.create();
+        this.parser = engine.create(this.factory);
+        this.serializer = serializer;
         this.mutableFactory = new ElementFactory(this.factory);
     }
 
     public static ServiceContext create()
     {
-        return new DefaultServiceContext();
+        return create(ParserEngine.SAX);
+    }
+
+    /**
+     * Create a context that parses with the given engine.
+     * 
+     * @param engine
+     *            The parser engine
+     * @return A new context
+     */
+    public static ServiceContext create(@Nonnull final ParserEngine engine)
+    {
+        return create(engine, Serializers.xmlStreamWriter());
+    }
+
+    /**
+     * Create a context that parses with the given engine and serializes with
+     * the given serializer.
+     * 
+     * @param engine
+     *            The parser engine
+     * @param serializer
+     *            One of the {@link Serializers}
+     * @return A new context
+     */
+    public static ServiceContext create(@Nonnull final ParserEngine engine, @Nonnull final Serializer serializer)
+    {
+        return new DefaultServiceContext(engine, serializer);
     }
 
     @Override
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2013 Christof Lemke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xml.entity.serilalize;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import xml.entity.immutableelement.NodeKind;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Keeps the nodes and values in direct buffers outside of the heap, see
+ * {@link DocumentStorage#OFF_HEAP}. Each node is a row of ints in a chunk of
+ * {@link #NODES_PER_CHUNK} rows, values are stored in chunks of chars and never
+ * span two chunks. The first chunks start small and are copied into chunks of
+ * twice the size until they reach the full size, so small documents do not
+ * reserve full chunks. The memory is released when the document is collected.
+ */
+final class DirectNodeStore implements NodeStore
+{
+    static final int NODES_PER_CHUNK = 1 << 16;
+    static final int CHARS_PER_CHUNK = 1 << 20;
+    private static final int FIRST_NODES = 64;
+    private static final int FIRST_CHARS = 1 << 10;
+    private static final NodeKind[] KINDS = NodeKind.values();
+
+    private static final int KIND = 0;
+    private static final int NAME = 4;
+    private static final int FIRST_CHILD = 8;
+    private static final int NEXT_SIBLING = 12;
+    private static final int VALUE_CHUNK = 16;
+    private static final int VALUE_OFFSET = 20;
+    private static final int VALUE_LENGTH = 24;
+    private static final int ROW_SIZE = 28;
+
+    private final List<ByteBuffer> nodes = Lists.newArrayList();
+    private final List<CharBuffer> values = Lists.newArrayList();
+    private int size = 0;
+    /** The number of rows in all node chunks */
+    private int capacity = 0;
+    /** The end of the values in the last value chunk */
+    private int valuesEnd = 0;
+
+    @Override
+    public int add(@Nonnull final NodeKind kind, final int nameIndex)
+    {
+        if(this.size == this.capacity)
+        {
+            addNodes();
+        }
+        final int node = this.size++;
+        final ByteBuffer chunk = chunk(node);
+        final int row = row(node);
+        chunk.putInt(row + KIND, kind.ordinal());
+        chunk.putInt(row + NAME, nameIndex);
+        chunk.putInt(row + FIRST_CHILD, -1);
+        chunk.putInt(row + NEXT_SIBLING, -1);
+        return node;
+    }
+
+    @Override
+    public void setFirstChild(final int node, final int child)
+    {
+        chunk(node).putInt(row(node) + FIRST_CHILD, child);
+    }
+
+    @Override
+    public void setNextSibling(final int node, final int sibling)
+    {
+        chunk(node).putInt(row(node) + NEXT_SIBLING, sibling);
+    }
+
+    @Override
+    public void setValue(final int node, @Nonnull final String value)
+    {
+        final int length = value.length();
+        if(this.values.isEmpty())
+        {
+            this.values.add(allocate(Math.max(FIRST_CHARS, length) * 2).asCharBuffer());
+        }
+        else if(this.valuesEnd + length > this.values.get(this.values.size() - 1).capacity())
+        {
+            addValues(length);
+        }
+        final CharBuffer chunk = this.values.get(this.values.size() - 1);
+        chunk.position(this.valuesEnd);
+        chunk.put(value);
+        final ByteBuffer nodeChunk = chunk(node);
+        final int row = row(node);
+        nodeChunk.putInt(row + VALUE_CHUNK, this.values.size() - 1);
+        nodeChunk.putInt(row + VALUE_OFFSET, this.valuesEnd);
+        nodeChunk.putInt(row + VALUE_LENGTH, length);
+        this.valuesEnd += length;
+    }
+
+    @Override
+    public void finish()
+    {
+        // the last chunks are only partly used, copying them would need the memory twice
+    }
+
+    private void addNodes()
+    {
+        if(this.nodes.isEmpty())
+        {
+            this.nodes.add(allocate(FIRST_NODES * ROW_SIZE));
+            this.capacity = FIRST_NODES;
+        }
+        else if(this.capacity < NODES_PER_CHUNK)
+        {
+            // only the first chunk is smaller than the full size
+            this.capacity = Math.min(this.capacity * 2, NODES_PER_CHUNK);
+            final ByteBuffer chunk = this.nodes.get(0).duplicate();
+            chunk.clear();
+            this.nodes.set(0, allocate(this.capacity * ROW_SIZE).put(chunk));
+        }
+        else
+        {
+            this.nodes.add(allocate(NODES_PER_CHUNK * ROW_SIZE));
+            this.capacity += NODES_PER_CHUNK;
+        }
+    }
+
+    /**
+     * Make room for a value of the given length after the last value chunk is
+     * full.
+     */
+    private void addValues(final int length)
+    {
+        final int last = this.values.size() - 1;
+        final int required = this.valuesEnd + length;
+        final int capacity = this.values.get(last).capacity();
+        if(capacity < CHARS_PER_CHUNK && required <= CHARS_PER_CHUNK)
+        {
+            final CharBuffer chunk = this.values.get(last).duplicate();
+            chunk.position(0).limit(this.valuesEnd);
+            final int grown = Math.min(Math.max(capacity * 2, required), CHARS_PER_CHUNK);
+            final CharBuffer copy = allocate(grown * 2).asCharBuffer();
+            copy.put(chunk);
+            this.values.set(last, copy);
+        }
+        else
+        {
+            this.values.add(allocate(Math.max(CHARS_PER_CHUNK, length) * 2).asCharBuffer());
+            this.valuesEnd = 0;
+        }
+    }
+
+    @Override
+    public int size()
+    {
+        return this.size;
+    }
+
+    @Override
+    @Nonnull
+    public NodeKind kind(final int node)
+    {
+        return KINDS[chunk(node).getInt(row(node) + KIND)];
+    }
+
+    @Override
+    public int nameIndex(final int node)
+    {
+        return chunk(node).getInt(row(node) + NAME);
+    }
+
+    @Override
+    public int firstChild(final int node)
+    {
+        return chunk(node).getInt(row(node) + FIRST_CHILD);
+    }
+
+    @Override
+    public int nextSibling(final int node)
+    {
+        return chunk(node).getInt(row(node) + NEXT_SIBLING);
+    }
+
+    @Override
+    @Nonnull
+    public String value(final int node)
+    {
+        final ByteBuffer nodeChunk = chunk(node);
+        final int row = row(node);
+        final int offset = nodeChunk.getInt(row + VALUE_OFFSET);
+        final char[] value = new char[nodeChunk.getInt(row + VALUE_LENGTH)];
+        final CharBuffer chunk = this.values.get(nodeChunk.getInt(row + VALUE_CHUNK));
+        for(int i = 0; i < value.length; i++)
+        {
+            value[i] = chunk.get(offset + i);
+        }
+        return new String(value);
+    }
+
+    private ByteBuffer chunk(final int node)
+    {
+        return this.nodes.get(node / NODES_PER_CHUNK);
+    }
+
+    private static int row(final int node)
+    {
+        return node % NODES_PER_CHUNK * ROW_SIZE;
+    }
+
+    private static ByteBuffer allocate(final int bytes)
+    {
+        return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+    }
+}
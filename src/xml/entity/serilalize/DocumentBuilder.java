@@ -0,0 +1,32 @@
+/*
+ * Copyright 2013 Christof Lemke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xml.entity.serilalize;
+
+import javax.annotation.Nullable;
+
+import xml.entity.immutableelement.ImmutableElement;
+
+/**
+ * An {@link ElementSink} that builds a document.
+ */
+interface DocumentBuilder extends ElementSink
+{
+    /**
+     * @return The root element, or null if the document has not been closed
+     */
+    @Nullable
+    ImmutableElement root();
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2013 Christof Lemke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xml.entity.serilalize;
+
+import javax.annotation.Nonnull;
+
+import xml.entity.immutableelement.ImmutableElementFactory;
+
+/**
+ * How the nodes of a parsed document are stored, see
+ * {@link Parser#withStorage(DocumentStorage)}.
+ */
+public enum DocumentStorage
+{
+    /**
+     * Every node is an object created by the factory.
+     */
+    OBJECTS
+    {
+        @Override
+        DocumentBuilder builder(@Nonnull final ImmutableElementFactory factory)
+        {
+            return new TreeBuilder(factory);
+        }
+    },
+    /**
+     * The nodes are rows of a few int arrays and the values share one char
+     * array. Nodes are small views created when they are accessed, so a
+     * document takes a fraction of the heap of {@link #OBJECTS}. Updates create
+     * elements with the factory that share the unchanged packed subtrees.
+     */
+    PACKED
+    {
+        @Override
+        DocumentBuilder builder(@Nonnull final ImmutableElementFactory factory)
+        {
+            return new PackedBuilder(factory, new HeapNodeStore());
+        }
+    },
+    /**
+     * Like {@link #PACKED}, but the nodes and values are kept in direct
+     * buffers outside of the heap. Documents larger than the heap can be
+     * parsed and the garbage collector does not need to trace their nodes.
+     * Names and the views created on access are still on the heap. The direct
+     * memory is limited by -XX:MaxDirectMemorySize.
+     */
+    OFF_HEAP
+    {
+        @Override
+        DocumentBuilder builder(@Nonnull final ImmutableElementFactory factory)
+        {
+            return new PackedBuilder(factory, new DirectNodeStore());
+        }
+    };
+
+    /**
+     * @param factory
+     *            The factory of the parser
+     * @return A builder for one document
+     */
+    abstract DocumentBuilder builder(@Nonnull ImmutableElementFactory factory);
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2013 Christof Lemke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xml.entity.serilalize;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Receives the content of a document from a parser engine. Attributes and
+ * text belong to the most recently started element that has not ended yet.
+ */
+interface ElementSink
+{
+    void startElement(@Nonnull String name);
+
+    void attribute(@Nonnull String name, @Nonnull String value);
+
+    void text(@Nonnull String value);
+
+    void endElement();
+}
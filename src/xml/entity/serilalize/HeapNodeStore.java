@@ -0,0 +1,138 @@
+/*
+ * Copyright 2013 Christof Lemke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xml.entity.serilalize;
+
+import java.util.Arrays;
+
+import javax.annotation.Nonnull;
+
+import xml.entity.immutableelement.NodeKind;
+
+/**
+ * Keeps the nodes in int arrays and the values in one char array, see
+ * {@link DocumentStorage#PACKED}.
+ */
+final class HeapNodeStore implements NodeStore
+{
+    private static final int INITIAL_NODES = 64;
+    private static final NodeKind[] KINDS = NodeKind.values();
+
+    private byte[] kinds = new byte[INITIAL_NODES];
+    private int[] nameIndexes = new int[INITIAL_NODES];
+    private int[] firstChildren = new int[INITIAL_NODES];
+    private int[] nextSiblings = new int[INITIAL_NODES];
+    private int[] valueOffsets = new int[INITIAL_NODES];
+    private int[] valueLengths = new int[INITIAL_NODES];
+    private int size = 0;
+    private char[] values = new char[INITIAL_NODES * 8];
+    private int valuesSize = 0;
+
+    @Override
+    public int add(@Nonnull final NodeKind kind, final int nameIndex)
+    {
+        if(this.size == this.kinds.length)
+        {
+            resize(this.size * 2);
+        }
+        final int node = this.size++;
+        this.kinds[node] = (byte) kind.ordinal();
+        this.nameIndexes[node] = nameIndex;
+        this.firstChildren[node] = -1;
+        this.nextSiblings[node] = -1;
+        return node;
+    }
+
+    @Override
+    public void setFirstChild(final int node, final int child)
+    {
+        this.firstChildren[node] = child;
+    }
+
+    @Override
+    public void setNextSibling(final int node, final int sibling)
+    {
+        this.nextSiblings[node] = sibling;
+    }
+
+    @Override
+    public void setValue(final int node, @Nonnull final String value)
+    {
+        final int length = value.length();
+        if(this.valuesSize + length > this.values.length)
+        {
+            this.values = Arrays.copyOf(this.values, Math.max(this.values.length * 2, this.valuesSize + length));
+        }
+        value.getChars(0, length, this.values, this.valuesSize);
+        this.valueOffsets[node] = this.valuesSize;
+        this.valueLengths[node] = length;
+        this.valuesSize += length;
+    }
+
+    @Override
+    public void finish()
+    {
+        resize(this.size);
+        this.values = Arrays.copyOf(this.values, this.valuesSize);
+    }
+
+    private void resize(final int capacity)
+    {
+        this.kinds = Arrays.copyOf(this.kinds, capacity);
+        this.nameIndexes = Arrays.copyOf(this.nameIndexes, capacity);
+        this.firstChildren = Arrays.copyOf(this.firstChildren, capacity);
+        this.nextSiblings = Arrays.copyOf(this.nextSiblings, capacity);
+        this.valueOffsets = Arrays.copyOf(this.valueOffsets, capacity);
+        this.valueLengths = Arrays.copyOf(this.valueLengths, capacity);
+    }
+
+    @Override
+    public int size()
+    {
+        return this.size;
+    }
+
+    @Override
+    @Nonnull
+    public NodeKind kind(final int node)
+    {
+        return KINDS[this.kinds[node]];
+    }
+
+    @Override
+    public int nameIndex(final int node)
+    {
+        return this.nameIndexes[node];
+    }
+
+    @Override
+    public int firstChild(final int node)
+    {
+        return this.firstChildren[node];
+    }
+
+    @Override
+    public int nextSibling(final int node)
+    {
+        return this.nextSiblings[node];
+    }
+
+    @Override
+    @Nonnull
+    public String value(final int node)
+    {
+        return new String(this.values, this.valueOffsets[node], this.valueLengths[node]);
+    }
+}
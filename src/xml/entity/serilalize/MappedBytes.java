@@ -0,0 +1,125 @@
+/*
+ * Copyright 2013 Christof Lemke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xml.entity.serilalize;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.google.common.base.Charsets;
+
+/**
+ * Read only access to a file that is mapped into memory in regions, so files
+ * can be larger than a single {@link MappedByteBuffer}. Only absolute reads
+ * are used, the regions can be shared between threads.
+ */
+@ThreadSafe
+final class MappedBytes
+{
+    static final long REGION_SIZE = 1L << 30;
+
+    private final MappedByteBuffer[] regions;
+    private final long regionSize;
+    private final long size;
+
+    MappedBytes(@Nonnull final FileChannel channel) throws IOException
+    {
+        this(channel, REGION_SIZE);
+    }
+
+    MappedBytes(@Nonnull final FileChannel channel, final long regionSize) throws IOException
+    {
+        this.regionSize = regionSize;
+        this.size = channel.size();
+        this.regions = new MappedByteBuffer[(int) ((this.size + regionSize - 1) / regionSize)];
+        for(int i = 0; i < this.regions.length; i++)
+        {
+            final long start = i * regionSize;
+            this.regions[i] = channel.map(MapMode.READ_ONLY, start, Math.min(regionSize, this.size - start));
+        }
+    }
+
+    long size()
+    {
+        return this.size;
+    }
+
+    byte get(final long position)
+    {
+        if(position < 0 || position >= this.size)
+        {
+            throw new IllegalArgumentException("truncated document");
+        }
+        return this.regions[(int) (position / this.regionSize)].get((int) (position % this.regionSize));
+    }
+
+    /**
+     * @return The unsigned varint at the position, it is
+     *         {@link BinaryFormat#varintSize(long)} bytes long
+     */
+    long varint(final long position)
+    {
+        long value = 0;
+        for(int shift = 0; shift < 64; shift += 7)
+        {
+            final byte b = get(position + shift / 7);
+            value |= (long) (b & 0x7F) << shift;
+            if((b & 0x80) == 0)
+            {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("malformed varint");
+    }
+
+    int intVarint(final long position)
+    {
+        final long value = varint(position);
+        if(value < 0 || value > Integer.MAX_VALUE)
+        {
+            throw new IllegalArgumentException("value out of range: " + value);
+        }
+        return (int) value;
+    }
+
+    /**
+     * Decode a UTF-8 string.
+     */
+    String string(final long position, final int length)
+    {
+        if(position < 0 || position + length > this.size)
+        {
+            throw new IllegalArgumentException("truncated document");
+        }
+        final byte[] bytes = new byte[length];
+        int copied = 0;
+        while(copied < length)
+        {
+            final long current = position + copied;
+            final ByteBuffer region = this.regions[(int) (current / this.regionSize)].duplicate();
+            region.position((int) (current % this.regionSize));
+            final int count = Math.min(length - copied, region.remaining());
+            region.get(bytes, copied, count);
+            copied += count;
+        }
+        return new String(bytes, Charsets.UTF_8);
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2013 Christof Lemke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xml.entity.serilalize;
+
+import static xml.entity.serilalize.BinaryFormat.varintSize;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+import xml.entity.immutableelement.ImmutableElement;
+import xml.entity.immutableelement.ImmutableElementFactory;
+import xml.entity.select.DefaultSelector;
+import xml.entity.select.PathParser;
+import xml.entity.select.Selector;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A read only view of a document written by {@link BinaryCodec}. The file is
+ * mapped into memory and the nodes decode their names, values and children on
+ * demand, so the document is never loaded onto the heap. The mapping is shared
+ * by all processes that open the same file. Selects work as usual, updates
+ * create heap elements with the factory that share the unchanged mapped
+ * subtrees.
+ */
+@ThreadSafe
+public final class MappedDocument
+{
+    private final MappedBytes bytes;
+    private final Selector selector;
+    private final String[] names;
+    private final long rootOffset;
+
+    private MappedDocument(final MappedBytes bytes, final ImmutableElementFactory factory)
+    {
+        this.bytes = bytes;
+        this.selector = new DefaultSelector(PathParser.create(), factory);
+        long position = 0;
+        for(final byte b : BinaryFormat.MAGIC)
+        {
+            Preconditions.checkArgument(bytes.get(position++) == b, "not a binary document");
+        }
+        final byte version = bytes.get(position++);
+        Preconditions.checkArgument(version == BinaryFormat.VERSION, "unsupported version %s", version);
+        final int nameCount = bytes.intVarint(position);
+        position += varintSize(nameCount);
+        // a name takes at least its length
+        if(nameCount > bytes.size() - position)
+        {
+            throw new IllegalArgumentException("truncated document");
+        }
+        this.names = new String[nameCount];
+        for(int i = 0; i < this.names.length; i++)
+        {
+            final int length = bytes.intVarint(position);
+            position += varintSize(length);
+            this.names[i] = bytes.string(position, length);
+            position += length;
+        }
+        this.rootOffset = position;
+        Preconditions.checkArgument(bytes.get(position) == BinaryFormat.ELEMENT, "the root is not an element");
+    }
+
+    /**
+     * Map a file written by {@link BinaryCodec}.
+     * 
+     * @param file
+     *            The file
+     * @param factory
+     *            Creates the elements of updates
+     * @return The document
+     */
+    @Nonnull
+    public static MappedDocument open(@Nonnull final File file, @Nonnull final ImmutableElementFactory factory) throws IOException
+    {
+        final FileInputStream stream = new FileInputStream(file);
+        try
+        {
+            return new MappedDocument(new MappedBytes(stream.getChannel()), factory);
+        }
+        finally
+        {
+            // the mapping stays valid after the channel is closed
+            stream.close();
+        }
+    }
+
+    /**
+     * @return The root element
+     */
+    @Nonnull
+    public ImmutableElement root()
+    {
+        return new MappedElement(this, this.rootOffset);
+    }
+
+    MappedNode node(final long offset)
+    {
+        final byte tag = this.bytes.get(offset);
+        switch(tag)
+        {
+            case BinaryFormat.ELEMENT:
+                return new MappedElement(this, offset);
+            case BinaryFormat.ATTRIBUTE:
+            case BinaryFormat.TEXT:
+                return new MappedLeaf(this, offset);
+            default:
+                throw new IllegalArgumentException("unknown node kind " + tag + " at " + offset);
+        }
+    }
+
+    MappedBytes bytes()
+    {
+        return this.bytes;
+    }
+
+    Selector selector()
+    {
+        return this.selector;
+    }
+
+    /**
+     * @throws IllegalArgumentException
+     *             If the document has no name with the index
+     */
+    String name(final int index)
+    {
+        Preconditions.checkArgument(index < this.names.length, "unknown name %s", index);
+        return this.names[index];
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2013 Christof Lemke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xml.entity.serilalize;
+
+import static xml.entity.serilalize.BinaryFormat.varintSize;
+
+import javax.annotation.Nonnull;
+
+import xml.entity.immutableelement.ImmutableElement;
+import xml.entity.immutableelement.ImmutableElements;
+import xml.entity.immutableelement.NodeKind;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+
+/**
+ * An element of a {@link MappedDocument}. The children are decoded each time
+ * they are requested.
+ */
+final class MappedElement extends MappedNode
+{
+    private final String name;
+    private final int childCount;
+    private final long contentStart;
+    private final long contentEnd;
+
+    MappedElement(@Nonnull final MappedDocument document, final long offset)
+    {
+        super(document, offset);
+        final MappedBytes bytes = document.bytes();
+        long position = offset + 1;
+        final int nameIndex = bytes.intVarint(position);
+        position += varintSize(nameIndex);
+        this.name = document.name(nameIndex);
+        this.childCount = bytes.intVarint(position);
+        position += varintSize(this.childCount);
+        final long contentLength = bytes.varint(position);
+        this.contentStart = position + varintSize(contentLength);
+        this.contentEnd = this.contentStart + contentLength;
+    }
+
+    @Override
+    long end()
+    {
+        return this.contentEnd;
+    }
+
+    @Override
+    public String name()
+    {
+        return this.name;
+    }
+
+    @Override
+    public NodeKind kind()
+    {
+        return NodeKind.ELEMENT;
+    }
+
+    @Override
+    public String value()
+    {
+        return Joiner.on("").join(Iterables.filter(children(), ImmutableElements.isText()));
+    }
+
+    @Override
+    @Nonnull
+    public ImmutableList<ImmutableElement> children()
+    {
+        final ImmutableElement[] children = new ImmutableElement[this.childCount];
+        long position = this.contentStart;
+        for(int i = 0; i < children.length; i++)
+        {
+            final MappedNode child = this.document.node(position);
+            children[i] = child;
+            position = child.end();
+        }
+        return ImmutableList.copyOf(children);
+    }
+
+    @Override
+    @Nonnull
+    public ImmutableList<ImmutableElement> children(@Nonnull final String name)
+    {
+        return ImmutableList.copyOf(Iterables.filter(children(), ImmutableElements.byName(name)));
+    }
+
+    @Override
+    public ImmutableElement child(final String name)
+    {
+        return Iterables.getOnlyElement(children(name));
+    }
+
+    @Override
+    public String toString()
+    {
+        return this.name + children().toString();
+    }
+}
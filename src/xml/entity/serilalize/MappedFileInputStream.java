@@ -0,0 +1,107 @@
+/*
+ * Copyright 2013 Christof Lemke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xml.entity.serilalize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Reads a file through memory mapped regions of the file channel. Files larger
+ * than a single region are mapped one region after the other.
+ */
+final class MappedFileInputStream extends InputStream
+{
+    static final long REGION_SIZE = 256L * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final long size;
+    private long regionStart = 0;
+    private MappedByteBuffer region = null;
+
+    MappedFileInputStream(@Nonnull final FileChannel channel) throws IOException
+    {
+        this.channel = channel;
+        this.size = channel.size();
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+        if(!nextRegion())
+        {
+            return -1;
+        }
+        return this.region.get() & 0xFF;
+    }
+
+    @Override
+    public int read(final byte[] bytes, final int offset, final int length) throws IOException
+    {
+        if(length == 0)
+        {
+            return 0;
+        }
+        if(!nextRegion())
+        {
+            return -1;
+        }
+        final int count = Math.min(length, this.region.remaining());
+        this.region.get(bytes, offset, count);
+        return count;
+    }
+
+    @Override
+    public int available()
+    {
+        return this.region == null ? 0 : this.region.remaining();
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        this.region = null;
+        this.channel.close();
+    }
+
+    /**
+     * Make sure the current region has remaining bytes.
+     * 
+     * @return false at the end of the file
+     */
+    private boolean nextRegion() throws IOException
+    {
+        if(this.region != null && this.region.hasRemaining())
+        {
+            return true;
+        }
+        if(this.region != null)
+        {
+            this.regionStart += this.region.capacity();
+        }
+        if(this.regionStart >= this.size)
+        {
+            return false;
+        }
+        final long regionSize = Math.min(REGION_SIZE, this.size - this.regionStart);
+        this.region = this.channel.map(MapMode.READ_ONLY, this.regionStart, regionSize);
+        return this.region.hasRemaining();
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2013 Christof Lemke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xml.entity.serilalize;
+
+import static xml.entity.serilalize.BinaryFormat.varintSize;
+
+import javax.annotation.Nonnull;
+
+import xml.entity.immutableelement.ImmutableElement;
+import xml.entity.immutableelement.NodeKind;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * An attribute or text node of a {@link MappedDocument}. The value is decoded
+ * each time it is requested.
+ */
+final class MappedLeaf extends MappedNode
+{
+    private final String name;
+    private final NodeKind kind;
+    private final long valueStart;
+    private final int valueLength;
+
+    MappedLeaf(@Nonnull final MappedDocument document, final long offset)
+    {
+        super(document, offset);
+        final MappedBytes bytes = document.bytes();
+        long position = offset + 1;
+        if(bytes.get(offset) == BinaryFormat.ATTRIBUTE)
+        {
+            final int nameIndex = bytes.intVarint(position);
+            position += varintSize(nameIndex);
+            this.name = document.name(nameIndex);
+            this.kind = NodeKind.ATTRIBUTE;
+        }
+        else
+        {
+            this.name = "#text";
+            this.kind = NodeKind.TEXT;
+        }
+        this.valueLength = bytes.intVarint(position);
+        this.valueStart = position + varintSize(this.valueLength);
+    }
+
+    @Override
+    long end()
+    {
+        return this.valueStart + this.valueLength;
+    }
+
+    @Override
+    public String name()
+    {
+        return this.name;
+    }
+
+    @Override
+    public NodeKind kind()
+    {
+        return this.kind;
+    }
+
+    @Override
+    public String value()
+    {
+        return this.document.bytes().string(this.valueStart, this.valueLength);
+    }
+
+    @Override
+    @Nonnull
+    public ImmutableList<ImmutableElement> children()
+    {
+        return ImmutableList.of();
+    }
+
+    @Override
+    @Nonnull
+    public ImmutableList<ImmutableElement> children(@Nonnull final String name)
+    {
+        return ImmutableList.of();
+    }
+
+    @Override
+    @Nonnull
+    public ImmutableElement child(final String name)
+    {
+        throw new IllegalStateException("node " + this + " has no children");
+    }
+
+    @Override
+    public String toString()
+    {
+        return this.kind == NodeKind.TEXT ? value() : this.name + "=" + value();
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2013 Christof Lemke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xml.entity.serilalize;
+
+import javax.annotation.Nonnull;
+
+import xml.entity.immutableelement.AbstractElementView;
+import xml.entity.select.Selector;
+
+/**
+ * A node of a {@link MappedDocument}. Nodes are decoded on demand, so two
+ * instances for the same offset of the same document are equal.
+ */
+abstract class MappedNode extends AbstractElementView
+{
+    final MappedDocument document;
+    /** The offset of the kind tag */
+    final long offset;
+
+    MappedNode(@Nonnull final MappedDocument document, final long offset)
+    {
+        this.document = document;
+        this.offset = offset;
+    }
+
+    /**
+     * @return The offset behind the node
+     */
+    abstract long end();
+
+    @Override
+    @Nonnull
+    protected Selector selector()
+    {
+        return this.document.selector();
+    }
+
+    @Override
+    public boolean equals(final Object obj)
+    {
+        if(!(obj instanceof MappedNode))
+        {
+            return false;
+        }
+        final MappedNode other = (MappedNode) obj;
+        return this.document == other.document && this.offset == other.offset;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return (int) (this.offset ^ this.offset >>> 32);
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2013 Christof Lemke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xml.entity.serilalize;
+
+import javax.annotation.Nonnull;
+
+import xml.entity.immutableelement.NodeKind;
+
+/**
+ * The rows of a {@link PackedDocument}. Nodes are appended by a single
+ * {@link PackedBuilder}, once {@link #finish()} has been called the store is
+ * only read and can be shared between threads.
+ */
+interface NodeStore
+{
+    /**
+     * Append a node without children, siblings or value.
+     * 
+     * @return The index of the node
+     */
+    int add(@Nonnull NodeKind kind, int nameIndex);
+
+    void setFirstChild(int node, int child);
+
+    void setNextSibling(int node, int sibling);
+
+    void setValue(int node, @Nonnull String value);
+
+    /**
+     * Release the capacity that has not been used.
+     */
+    void finish();
+
+    /**
+     * @return The number of nodes
+     */
+    int size();
+
+    @Nonnull
+    NodeKind kind(int node);
+
+    int nameIndex(int node);
+
+    /**
+     * @return The first child, or -1 if the node has no children
+     */
+    int firstChild(int node);
+
+    /**
+     * @return The next sibling, or -1 if the node is the last child
+     */
+    int nextSibling(int node);
+
+    /**
+     * @return The value of an attribute or text node
+     */
+    @Nonnull
+    String value(int node);
+}
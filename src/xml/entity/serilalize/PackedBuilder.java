@@ -0,0 +1,144 @@
+/*
+ * Copyright 2013 Christof Lemke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xml.entity.serilalize;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import xml.entity.immutableelement.ImmutableElement;
+import xml.entity.immutableelement.ImmutableElementFactory;
+import xml.entity.immutableelement.NodeKind;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Builds a {@link PackedDocument}. Nodes are appended in document order, each
+ * element remembers its last child so the next one can be linked as its
+ * sibling.
+ */
+final class PackedBuilder implements DocumentBuilder
+{
+    private static final int INITIAL_DEPTH = 16;
+
+    private final ImmutableElementFactory factory;
+    private final Map<String, Integer> elementNames = Maps.newHashMap();
+    private final Map<String, Integer> attributeNames = Maps.newHashMap();
+    private final List<String> names = Lists.newArrayList();
+    private final int textName;
+    private final NodeStore store;
+
+    /** The open elements and their last child, -1 while they have none */
+    private int[] open = new int[INITIAL_DEPTH];
+    private int[] lastChildren = new int[INITIAL_DEPTH];
+    private int depth = 0;
+    private PackedDocument document = null;
+
+    PackedBuilder(@Nonnull final ImmutableElementFactory factory, @Nonnull final NodeStore store)
+    {
+        this.factory = Preconditions.checkNotNull(factory);
+        this.store = Preconditions.checkNotNull(store);
+        this.textName = name(this.elementNames, "#text", "#text");
+    }
+
+    @Override
+    public void startElement(@Nonnull final String name)
+    {
+        final int index = add(NodeKind.ELEMENT, name(this.elementNames, name, name));
+        if(this.depth == this.open.length)
+        {
+            this.open = Arrays.copyOf(this.open, this.depth * 2);
+            this.lastChildren = Arrays.copyOf(this.lastChildren, this.depth * 2);
+        }
+        this.open[this.depth] = index;
+        this.lastChildren[this.depth] = -1;
+        this.depth++;
+    }
+
+    @Override
+    public void attribute(@Nonnull final String name, @Nonnull final String value)
+    {
+        Integer id = this.attributeNames.get(name);
+        if(id == null)
+        {
+            id = name(this.attributeNames, name, "@" + name);
+        }
+        this.store.setValue(add(NodeKind.ATTRIBUTE, id), value);
+    }
+
+    @Override
+    public void text(@Nonnull final String value)
+    {
+        this.store.setValue(add(NodeKind.TEXT, this.textName), value);
+    }
+
+    @Override
+    public void endElement()
+    {
+        Preconditions.checkState(this.depth > 0, "no open element");
+        this.depth--;
+        if(this.depth == 0)
+        {
+            this.store.finish();
+            this.document = new PackedDocument(this.factory, this.names.toArray(new String[this.names.size()]), this.store);
+        }
+    }
+
+    @Override
+    @Nullable
+    public ImmutableElement root()
+    {
+        return this.document == null ? null : this.document.root();
+    }
+
+    private int name(final Map<String, Integer> ids, final String name, final String symbol)
+    {
+        final Integer id = ids.get(name);
+        if(id != null)
+        {
+            return id;
+        }
+        ids.put(name, this.names.size());
+        this.names.add(symbol);
+        return this.names.size() - 1;
+    }
+
+    private int add(final NodeKind kind, final int nameId)
+    {
+        Preconditions.checkState(this.depth > 0 || kind == NodeKind.ELEMENT && this.store.size() == 0, "no open element");
+        final int index = this.store.add(kind, nameId);
+        if(this.depth > 0)
+        {
+            final int parent = this.depth - 1;
+            final int previous = this.lastChildren[parent];
+            if(previous == -1)
+            {
+                this.store.setFirstChild(this.open[parent], index);
+            }
+            else
+            {
+                this.store.setNextSibling(previous, index);
+            }
+            this.lastChildren[parent] = index;
+        }
+        return index;
+    }
+}
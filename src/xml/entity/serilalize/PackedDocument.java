@@ -0,0 +1,152 @@
+/*
+ * Copyright 2013 Christof Lemke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xml.entity.serilalize;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+import xml.entity.immutableelement.ImmutableElement;
+import xml.entity.immutableelement.ImmutableElementFactory;
+import xml.entity.immutableelement.NodeKind;
+import xml.entity.select.DefaultSelector;
+import xml.entity.select.PathParser;
+import xml.entity.select.Selector;
+
+import com.google.common.collect.Maps;
+
+/**
+ * A document stored as one row per node in a {@link NodeStore}, see
+ * {@link DocumentStorage#PACKED}. Nodes are numbered in document order, the
+ * root is node 0. The children of an element are linked from its first child
+ * through the next siblings, -1 ends the list.
+ */
+@Immutable
+final class PackedDocument
+{
+    private final Selector selector;
+    private final String[] names;
+    private final Map<String, Integer> nameIds;
+    private final NodeStore store;
+    /** The structural hashes by node, null until the first one is computed */
+    private volatile AtomicLongArray structuralHashes = null;
+
+    PackedDocument(
+            @Nonnull final ImmutableElementFactory factory,
+            @Nonnull final String[] names,
+            @Nonnull final NodeStore store)
+    {
+        this.selector = new DefaultSelector(PathParser.create(), factory);
+        this.names = names;
+        this.nameIds = Maps.newHashMapWithExpectedSize(names.length);
+        for(int i = 0; i < names.length; i++)
+        {
+            this.nameIds.put(names[i], i);
+        }
+        this.store = store;
+    }
+
+    @Nonnull
+    ImmutableElement root()
+    {
+        return new PackedNode(this, 0);
+    }
+
+    Selector selector()
+    {
+        return this.selector;
+    }
+
+    /**
+     * @return The number of nodes
+     */
+    int size()
+    {
+        return this.store.size();
+    }
+
+    NodeKind kind(final int node)
+    {
+        return this.store.kind(node);
+    }
+
+    String name(final int node)
+    {
+        return this.names[this.store.nameIndex(node)];
+    }
+
+    int nameIndex(final int node)
+    {
+        return this.store.nameIndex(node);
+    }
+
+    /**
+     * @return The index of the name, or -1 if no node has the name
+     */
+    int nameIndex(final String name)
+    {
+        final Integer id = this.nameIds.get(name);
+        return id == null ? -1 : id;
+    }
+
+    int firstChild(final int node)
+    {
+        return this.store.firstChild(node);
+    }
+
+    int nextSibling(final int node)
+    {
+        return this.store.nextSibling(node);
+    }
+
+    /**
+     * @return The structural hash of the node, or 0 if it has not been
+     *         computed
+     */
+    long structuralHash(final int node)
+    {
+        final AtomicLongArray hashes = this.structuralHashes;
+        return hashes == null ? 0 : hashes.get(node);
+    }
+
+    void cacheStructuralHash(final int node, final long hash)
+    {
+        AtomicLongArray hashes = this.structuralHashes;
+        if(hashes == null)
+        {
+            synchronized(this)
+            {
+                hashes = this.structuralHashes;
+                if(hashes == null)
+                {
+                    hashes = new AtomicLongArray(this.store.size());
+                    this.structuralHashes = hashes;
+                }
+            }
+        }
+        hashes.set(node, hash);
+    }
+
+    /**
+     * @return The value of an attribute or text node
+     */
+    String value(final int node)
+    {
+        return this.store.value(node);
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2013 Christof Lemke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xml.entity.serilalize;
+
+import javax.annotation.Nonnull;
+
+import xml.entity.immutableelement.AbstractElementView;
+import xml.entity.immutableelement.ImmutableElement;
+import xml.entity.immutableelement.NodeKind;
+import xml.entity.select.Selector;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+
+/**
+ * A node of a {@link PackedDocument}. Nodes are created on access, two
+ * instances for the same node of the same document are equal. The structural
+ * hash is kept by the document.
+ */
+final class PackedNode extends AbstractElementView
+{
+    private final PackedDocument document;
+    private final int node;
+
+    PackedNode(@Nonnull final PackedDocument document, final int node)
+    {
+        this.document = document;
+        this.node = node;
+    }
+
+    @Override
+    public String name()
+    {
+        return this.document.name(this.node);
+    }
+
+    @Override
+    public NodeKind kind()
+    {
+        return this.document.kind(this.node);
+    }
+
+    @Override
+    public String value()
+    {
+        if(kind() != NodeKind.ELEMENT)
+        {
+            return this.document.value(this.node);
+        }
+        StringBuilder builder = null;
+        String single = "";
+        for(int child = this.document.firstChild(this.node); child != -1; child = this.document.nextSibling(child))
+        {
+            if(this.document.kind(child) != NodeKind.TEXT)
+            {
+                continue;
+            }
+            if(builder == null && single.isEmpty())
+            {
+                single = this.document.value(child);
+            }
+            else
+            {
+                if(builder == null)
+                {
+                    builder = new StringBuilder(single);
+                }
+                builder.append(this.document.value(child));
+            }
+        }
+        return builder == null ? single : builder.toString();
+    }
+
+    @Override
+    @Nonnull
+    public ImmutableList<ImmutableElement> children()
+    {
+        final ImmutableList.Builder<ImmutableElement> builder = ImmutableList.builder();
+        for(int child = this.document.firstChild(this.node); child != -1; child = this.document.nextSibling(child))
+        {
+            builder.add(new PackedNode(this.document, child));
+        }
+        return builder.build();
+    }
+
+    @Override
+    @Nonnull
+    public ImmutableList<ImmutableElement> children(@Nonnull final String name)
+    {
+        final int nameIndex = this.document.nameIndex(name);
+        if(nameIndex == -1)
+        {
+            return ImmutableList.of();
+        }
+        final ImmutableList.Builder<ImmutableElement> builder = ImmutableList.builder();
+        for(int child = this.document.firstChild(this.node); child != -1; child = this.document.nextSibling(child))
+        {
+            if(this.document.nameIndex(child) == nameIndex)
+            {
+                builder.add(new PackedNode(this.document, child));
+            }
+        }
+        return builder.build();
+    }
+
+    @Override
+    public ImmutableElement child(final String name)
+    {
+        if(kind() != NodeKind.ELEMENT)
+        {
+            throw new IllegalStateException("node " + this + " has no children");
+        }
+        return Iterables.getOnlyElement(children(name));
+    }
+
+    @Override
+    @Nonnull
+    protected Selector selector()
+    {
+        return this.document.selector();
+    }
+
+    @Override
+    protected long cachedStructuralHash()
+    {
+        return this.document.structuralHash(this.node);
+    }
+
+    @Override
+    protected void cacheStructuralHash(final long hash)
+    {
+        this.document.cacheStructuralHash(this.node, hash);
+    }
+
+    @Override
+    public boolean equals(final Object obj)
+    {
+        if(!(obj instanceof PackedNode))
+        {
+            return false;
+        }
+        final PackedNode other = (PackedNode) obj;
+        return this.document == other.document && this.node == other.node;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return this.node;
+    }
+
+    @Override
+    public String toString()
+    {
+        switch(kind())
+        {
+            case ELEMENT:
+                return name() + children().toString();
+            case ATTRIBUTE:
+                return name() + "=" + value();
+            default:
+                return value();
+        }
+    }
+}
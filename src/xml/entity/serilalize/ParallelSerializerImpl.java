@@ -0,0 +1,134 @@
+/*
+ * Copyright 2013 Christof Lemke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xml.entity.serilalize;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import xml.entity.immutableelement.ImmutableElement;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+/**
+ * A {@link Utf8SerializerImpl} that encodes the children of a wide root
+ * element in parallel. The children are split into chunks of
+ * {@link #CHUNK_SIZE}, each chunk is encoded into its own buffer by the
+ * executor and the buffers are written in document order. The output is the
+ * same as the sequential output.
+ */
+class ParallelSerializerImpl extends Utf8SerializerImpl
+{
+    static final int CHUNK_SIZE = 512;
+    /** Roots with fewer children are encoded sequentially */
+    static final int PARALLEL_THRESHOLD = 2 * CHUNK_SIZE;
+
+    private final ExecutorService executor;
+
+    ParallelSerializerImpl(final ExecutorService executor)
+    {
+        this.executor = Preconditions.checkNotNull(executor);
+    }
+
+    public static Serializer create(final ExecutorService executor)
+    {
+        return new ParallelSerializerImpl(executor);
+    }
+
+    @Override
+    void encode(final ImmutableElement element, final OutputStream stream) throws IOException
+    {
+        final ImmutableList<ImmutableElement> children = element.children();
+        if(children.size() < PARALLEL_THRESHOLD)
+        {
+            super.encode(element, stream);
+            return;
+        }
+        final Utf8Output output = new Utf8Output(stream);
+        if(writeStartTag(output, element))
+        {
+            final List<Future<byte[]>> chunks = Lists.newArrayList();
+            try
+            {
+                for(int start = 0; start < children.size(); start += CHUNK_SIZE)
+                {
+                    final List<ImmutableElement> chunk = children.subList(start, Math.min(start + CHUNK_SIZE, children.size()));
+                    chunks.add(this.executor.submit(new EncodeChunk(chunk)));
+                }
+                for(final Future<byte[]> chunk : chunks)
+                {
+                    output.writeBytes(get(chunk));
+                }
+            }
+            finally
+            {
+                for(final Future<byte[]> chunk : chunks)
+                {
+                    chunk.cancel(false);
+                }
+            }
+            writeEndTag(output, element);
+        }
+        output.flush();
+    }
+
+    private static byte[] get(final Future<byte[]> chunk) throws IOException
+    {
+        try
+        {
+            return chunk.get();
+        }
+        catch(final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while encoding");
+        }
+        catch(final ExecutionException e)
+        {
+            Throwables.propagateIfPossible(e.getCause(), IOException.class);
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private static class EncodeChunk implements Callable<byte[]>
+    {
+        private final List<ImmutableElement> children;
+
+        EncodeChunk(final List<ImmutableElement> children)
+        {
+            this.children = children;
+        }
+
+        @Override
+        public byte[] call() throws IOException
+        {
+            final Utf8Output output = new Utf8Output();
+            for(final ImmutableElement child : this.children)
+            {
+                writeContent(output, child);
+            }
+            return output.toByteArray();
+        }
+    }
+}
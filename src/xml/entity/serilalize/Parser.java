@@ -15,8 +15,11 @@
  */
 package xml.entity.serilalize;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Reader;
+import java.nio.ByteBuffer;
 
 import xml.entity.immutableelement.ImmutableElement;
 
@@ -27,4 +30,86 @@ public interface Parser
 
     public ImmutableElement parse(String string);
 
+    /**
+     * Parse a document from bytes. The encoding is detected by the xml parser
+     * from the byte order mark or the xml declaration.
+     * 
+     * @param stream
+     *            The document
+     * @return The root element
+     */
+    public ImmutableElement parse(InputStream stream) throws IOException;
+
+    /**
+     * Parse the remaining bytes of the buffer, see {@link #parse(InputStream)}.
+     * The position of the buffer is not changed.
+     * 
+     * @param buffer
+     *            The document
+     * @return The root element
+     */
+    public ImmutableElement parse(ByteBuffer buffer);
+
+    /**
+     * Parse a file by memory mapping it, see {@link #parse(InputStream)}.
+     * 
+     * @param file
+     *            The document
+     * @return The root element
+     */
+    public ImmutableElement parse(File file) throws IOException;
+
+    /**
+     * Parse a document that consists of a list of records without building the
+     * whole tree. Each element matching the path is built, handed to the
+     * handler and dropped, everything outside of the records is skipped.
+     * 
+     * @param reader
+     *            The document
+     * @param path
+     *            A path of element names from the root, e.g. "/feed/entry".
+     *            Names can be '*' for any element.
+     * @param handler
+     *            Receives the records in document order
+     * @throws IllegalArgumentException
+     *             If the path contains anything but element names
+     */
+    public void stream(Reader reader, String path, RecordHandler handler) throws IOException;
+
+    /**
+     * Create a parser that only keeps the nodes the given select paths can
+     * reach. Elements that are not on any of the paths are dropped while
+     * parsing, elements on a path keep their attributes and text, and elements
+     * matching a whole path keep all their content. Selecting any of the paths
+     * from the resulting tree gives the same nodes as from the full tree.
+     * 
+     * @param paths
+     *            Paths as passed to {@link xml.entity.select.dsl.DSL.Select#from(String)},
+     *            at most 64
+     * @return A parser with the projection, replacing any projection of this
+     *         parser
+     */
+    public Parser project(String... paths);
+
+    /**
+     * Create a parser that applies the given policy to text. The default is
+     * {@link WhitespacePolicy#TRIM}.
+     * 
+     * @param policy
+     *            The whitespace policy
+     * @return A parser with the policy
+     */
+    public Parser withWhitespacePolicy(WhitespacePolicy policy);
+
+    /**
+     * Create a parser that stores the nodes of the parsed documents as given.
+     * The default is {@link DocumentStorage#OBJECTS}. Records passed to a
+     * {@link RecordHandler} are always built with the factory.
+     * 
+     * @param storage
+     *            The storage of the parsed documents
+     * @return A parser with the storage
+     */
+    public Parser withStorage(DocumentStorage storage);
+
 }
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2013 Christof Lemke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xml.entity.serilalize;
+
+import javax.annotation.Nonnull;
+
+import xml.entity.immutableelement.ImmutableElementFactory;
+
+/**
+ * The xml parsers that can be used to build {@link Parser}s.
+ */
+public enum ParserEngine
+{
+    /**
+     * Events are pushed from a SAX parser.
+     */
+    SAX
+    {
+        @Override
+        @Nonnull
+        public Parser create(@Nonnull final ImmutableElementFactory factory)
+        {
+            return ParserImpl.create(factory);
+        }
+    },
+    /**
+     * Events are pulled from a StAX stream reader.
+     */
+    STAX
+    {
+        @Override
+        @Nonnull
+        public Parser create(@Nonnull final ImmutableElementFactory factory)
+        {
+            return StaxParserImpl.create(factory);
+        }
+    };
+
+    /**
+     * Create a parser using this engine.
+     * 
+     * @param factory
+     *            The factory used to create the parsed nodes
+     * @return A new parser
+     */
+    @Nonnull
+    public abstract Parser create(@Nonnull ImmutableElementFactory factory);
+}
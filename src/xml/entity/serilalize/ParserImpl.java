@@ -16,9 +16,8 @@
 package xml.entity.serilalize;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Reader;
-import java.io.StringReader;
-import java.util.Deque;
 
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParserFactory;
@@ -32,96 +31,64 @@ import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
 import org.xml.sax.helpers.DefaultHandler;
 
-import xml.entity.immutableelement.ImmutableElement;
 import xml.entity.immutableelement.ImmutableElementFactory;
 
-import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableList.Builder;
-import com.google.common.collect.Lists;
 
-
-class ParserImpl implements Parser
+class ParserImpl extends AbstractParser
 {
-    private final Logger logger = LoggerFactory.getLogger(getClass());
     private final SAXParserFactory saxFactory = SAXParserFactory.newInstance();
-    private final ImmutableElementFactory factory;
 
-    ParserImpl(final ImmutableElementFactory factory)
+    ParserImpl(final ImmutableElementFactory factory, final Projection projection, final WhitespacePolicy whitespace, final DocumentStorage storage)
     {
-        this.factory = factory;
+        super(factory, projection, whitespace, storage);
     }
 
     public static Parser create(final ImmutableElementFactory factory)
     {
-        return new ParserImpl(factory);
+        return new ParserImpl(factory, Projection.all(), WhitespacePolicy.TRIM, DocumentStorage.OBJECTS);
+    }
+
+    @Override
+    AbstractParser copy(final ImmutableElementFactory factory, final Projection projection, final WhitespacePolicy whitespace, final DocumentStorage storage)
+    {
+        return new ParserImpl(factory, projection, whitespace, storage);
     }
 
     private static class ImmutableHandler extends DefaultHandler implements ContentHandler
     {
         private final Logger logger = LoggerFactory.getLogger(getClass());
-        private final ImmutableElementFactory factory;
-        private final Deque<ImmutableList.Builder<ImmutableElement>> currentChildren = Lists.newLinkedList();
-        private ImmutableElement root = null;
-        private StringBuilder cdata = null;
+        private final ElementSink sink;
+        private final TextBuffer text;
 
-        public ImmutableHandler(final ImmutableElementFactory factory)
+        public ImmutableHandler(final ElementSink sink, final WhitespacePolicy whitespace)
         {
-            this.factory = factory;
+            this.sink = sink;
+            this.text = new TextBuffer(whitespace);
         }
         @Override
         public void startElement(final String uri, final String localName, final String qName, final Attributes attributes)
         {
-            this.logger.debug("startElement: {}", qName);
-            if(this.cdata != null)
-            {
-                this.currentChildren.peek().add(this.factory.createText(this.cdata.toString()));
-                this.cdata = null;
-            }
-            final Builder<ImmutableElement> children = new ImmutableList.Builder<ImmutableElement>();
-            this.currentChildren.push(children);
+            this.text.flush(this.sink);
+            this.sink.startElement(qName);
 
             for(int i = 0; i < attributes.getLength(); i++)
             {
                 final String name = attributes.getQName(i);
                 final String value = attributes.getValue(i);
-                final ImmutableElement element = this.factory.createAttr(name, value);
-                children.add(element);
+                this.sink.attribute(name, value);
             }
         }
         @Override
         public void endElement(final String uri, final String localName, final String qName)
         {
-            this.logger.debug("endElement: {}", qName);
-            final Builder<ImmutableElement> builder = this.currentChildren.pop();
-            if(this.cdata != null)
-            {
-                builder.add(this.factory.createText(this.cdata.toString()));
-                this.cdata = null;
-            }
-            final ImmutableElement element = this.factory.createNode(qName, builder.build());
-            if(this.currentChildren.isEmpty())
-            {
-                this.root = element;
-            }
-            else
-            {
-                this.currentChildren.peek().add(element);
-            }
+            this.text.flush(this.sink);
+            this.sink.endElement();
         }
 
         @Override
         public void characters(final char[] ch, final int start, final int length)
         {
-            final String text = charsToString(ch, start, length);
-            this.logger.debug("characters: {}", text);
-            if(this.cdata == null)
-            {
-                this.cdata = new StringBuilder(text.trim());
-            }
-            else
-            {
-                this.cdata.append(text);
-            }
+            this.text.append(ch, start, length);
         }
 
         @Override
@@ -130,22 +97,6 @@ class ParserImpl implements Parser
             this.logger.debug("skippedEntity: {}", name);
         }
 
-        @Override
-        public void ignorableWhitespace(final char[] ch, final int start, final int length)
-        {
-            final String ignored = charsToString(ch, start, length);
-            this.logger.debug("ignorableWhitespace: {}", ignored);
-        }
-
-        private static String charsToString(final char[] ch, final int start, final int length)
-        {
-            return new String(ch, start, length);
-        }
-
-        public ImmutableElement root()
-        {
-            return this.root;
-        }
         @Override
         public void error(final SAXParseException e)
         {
@@ -166,12 +117,23 @@ class ParserImpl implements Parser
 
 
     @Override
-    public ImmutableElement parse(final Reader reader) throws IOException
+    void parse(final Reader reader, final ElementSink sink) throws IOException
 	{
-        final ImmutableHandler handler = new ImmutableHandler(this.factory);
+        parse(new InputSource(reader), sink);
+	}
+
+    @Override
+    void parse(final InputStream stream, final ElementSink sink) throws IOException
+    {
+        parse(new InputSource(stream), sink);
+    }
+
+    private void parse(final InputSource source, final ElementSink sink) throws IOException
+    {
+        final ImmutableHandler handler = new ImmutableHandler(sink, whitespace());
         try
         {
-            this.saxFactory.newSAXParser().parse(new InputSource(reader), handler);
+            this.saxFactory.newSAXParser().parse(source, handler);
         }
         catch(final SAXException e)
         {
@@ -181,20 +143,5 @@ class ParserImpl implements Parser
         {
             throw new RuntimeException("failed to create parser", e);
         }
-        this.logger.debug("root: {}", handler.root());
-        return handler.root();
-	}
-
-    @Override
-    public ImmutableElement parse(final String string)
-    {
-        try
-        {
-            return parse(new StringReader(string));
-        }
-        catch(final IOException e)
-        {
-            throw new RuntimeException(e);
-        }
     }
 }
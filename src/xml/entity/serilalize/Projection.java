@@ -0,0 +1,189 @@
+/*
+ * Copyright 2013 Christof Lemke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xml.entity.serilalize;
+
+import java.util.Arrays;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Restricts the parsed tree to the nodes a set of select paths can reach. An
+ * element is kept if its ancestors and its own name match the beginning of
+ * one of the paths, together with its attributes and text so predicates on
+ * the path can still be evaluated. Elements matching the full length of a path
+ * are kept with all their content.
+ */
+@Immutable
+final class Projection
+{
+    /** The paths are tracked as bits of a long */
+    static final int MAX_PATHS = Long.SIZE;
+
+    private static final Projection all = new Projection(ImmutableList.<RecordPath> of());
+
+    private final ImmutableList<RecordPath> paths;
+
+    private Projection(final ImmutableList<RecordPath> paths)
+    {
+        this.paths = paths;
+    }
+
+    /**
+     * @return A projection that keeps every node
+     */
+    @Nonnull
+    static Projection all()
+    {
+        return all;
+    }
+
+    /**
+     * @param selectPaths
+     *            Paths of the select DSL
+     * @return A projection keeping the nodes reachable by the paths
+     */
+    @Nonnull
+    static Projection of(@Nonnull final String... selectPaths)
+    {
+        Preconditions.checkArgument(selectPaths.length > 0, "at least one path is required");
+        Preconditions.checkArgument(selectPaths.length <= MAX_PATHS, "at most %s paths are supported", MAX_PATHS);
+        final ImmutableList.Builder<RecordPath> paths = ImmutableList.builder();
+        for(final String path : selectPaths)
+        {
+            paths.add(RecordPath.fromSelectPath(path));
+        }
+        return new Projection(paths.build());
+    }
+
+    /**
+     * @param sink
+     *            Receives the projected content
+     * @return A sink that forwards only the projected content
+     */
+    @Nonnull
+    ElementSink project(@Nonnull final ElementSink sink)
+    {
+        if(this.paths.isEmpty())
+        {
+            return sink;
+        }
+        return new ProjectingSink(sink);
+    }
+
+    private final class ProjectingSink implements ElementSink
+    {
+        private final ElementSink sink;
+        /** Bits of the paths the open element at each depth is on */
+        private long[] masks = new long[16];
+        /** The number of open elements on a path but not below its end */
+        private int depth = 0;
+        /** The number of open elements at or below the end of a path */
+        private int keepAll = 0;
+        /** The number of open elements that are dropped */
+        private int dropped = 0;
+
+        ProjectingSink(final ElementSink sink)
+        {
+            this.sink = sink;
+        }
+
+        @Override
+        public void startElement(final String name)
+        {
+            if(this.dropped > 0)
+            {
+                this.dropped++;
+                return;
+            }
+            if(this.keepAll > 0)
+            {
+                this.keepAll++;
+                this.sink.startElement(name);
+                return;
+            }
+            final long parentMask = this.depth == 0 ? -1L : this.masks[this.depth - 1];
+            long mask = 0;
+            boolean complete = false;
+            for(int i = 0; i < Projection.this.paths.size(); i++)
+            {
+                final RecordPath path = Projection.this.paths.get(i);
+                if((parentMask & (1L << i)) != 0 && this.depth < path.size() && path.matches(this.depth, name))
+                {
+                    mask |= 1L << i;
+                    complete |= path.size() == this.depth + 1;
+                }
+            }
+            if(mask == 0)
+            {
+                this.dropped = 1;
+                return;
+            }
+            this.sink.startElement(name);
+            if(complete)
+            {
+                this.keepAll = 1;
+                return;
+            }
+            if(this.depth == this.masks.length)
+            {
+                this.masks = Arrays.copyOf(this.masks, this.depth * 2);
+            }
+            this.masks[this.depth] = mask;
+            this.depth++;
+        }
+
+        @Override
+        public void attribute(final String name, final String value)
+        {
+            if(this.dropped == 0)
+            {
+                this.sink.attribute(name, value);
+            }
+        }
+
+        @Override
+        public void text(final String value)
+        {
+            if(this.dropped == 0)
+            {
+                this.sink.text(value);
+            }
+        }
+
+        @Override
+        public void endElement()
+        {
+            if(this.dropped > 0)
+            {
+                this.dropped--;
+                return;
+            }
+            if(this.keepAll > 0)
+            {
+                this.keepAll--;
+            }
+            else
+            {
+                this.depth--;
+            }
+            this.sink.endElement();
+        }
+    }
+}
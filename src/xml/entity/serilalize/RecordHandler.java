@@ -0,0 +1,36 @@
+/*
+ * Copyright 2013 Christof Lemke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xml.entity.serilalize;
+
+import javax.annotation.Nonnull;
+
+import xml.entity.immutableelement.ImmutableElement;
+
+/**
+ * Receives the records of a document streamed by
+ * {@link Parser#stream(java.io.Reader, String, RecordHandler)}.
+ */
+public interface RecordHandler
+{
+    /**
+     * Called once for every record, in document order.
+     * 
+     * @param record
+     *            The element matching the record path, including all its
+     *            children
+     */
+    void onRecord(@Nonnull ImmutableElement record);
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2013 Christof Lemke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xml.entity.serilalize;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * A path of element names, starting from the root, that can be matched while
+ * the document is parsed. A name can be '*' for any element. Unlike the paths
+ * of the select DSL it can not contain attribute or text expressions, since
+ * those are not known when an element starts.
+ */
+@Immutable
+final class RecordPath
+{
+    private static final String ANY = "*";
+    private static final Pattern namePattern = Pattern.compile("[^#@!=]+");
+    private static final Pattern selectNamePattern = Pattern.compile("!?([^#@]+).*");
+    private static final Pattern selectStarPattern = Pattern.compile("\\*.*");
+    private final ImmutableList<String> names;
+
+    private RecordPath(final ImmutableList<String> names)
+    {
+        this.names = names;
+    }
+
+    @Nonnull
+    static RecordPath parse(@Nonnull final String path)
+    {
+        final ImmutableList<String> names = ImmutableList.copyOf(Splitter.on('/').omitEmptyStrings().split(path));
+        if(names.isEmpty())
+        {
+            throw new IllegalArgumentException("Empty path: " + path);
+        }
+        for(final String name : names)
+        {
+            if(!namePattern.matcher(name).matches())
+            {
+                throw new IllegalArgumentException("Unable to parse: " + name + " in path: " + path);
+            }
+        }
+        return new RecordPath(names);
+    }
+
+    /**
+     * Take the element names of a path of the select DSL. Attribute and text
+     * expressions are dropped, so the result matches every element the select
+     * path can match.
+     */
+    @Nonnull
+    static RecordPath fromSelectPath(@Nonnull final String path)
+    {
+        final ImmutableList.Builder<String> names = ImmutableList.builder();
+        for(final String segment : Splitter.on('/').omitEmptyStrings().split(path))
+        {
+            if(selectStarPattern.matcher(segment).matches())
+            {
+                names.add(ANY);
+                continue;
+            }
+            final Matcher matcher = selectNamePattern.matcher(segment);
+            if(!matcher.matches())
+            {
+                throw new IllegalArgumentException("Unable to parse: " + segment + " in path: " + path);
+            }
+            names.add(matcher.group(1));
+        }
+        final ImmutableList<String> built = names.build();
+        if(built.isEmpty())
+        {
+            throw new IllegalArgumentException("Empty path: " + path);
+        }
+        return new RecordPath(built);
+    }
+
+    /**
+     * @return The number of elements in this path
+     */
+    int size()
+    {
+        return this.names.size();
+    }
+
+    /**
+     * @param depth
+     *            The depth of the element, 0 for the root
+     * @param name
+     *            The element name
+     * @return true if the element matches the path at this depth
+     */
+    boolean matches(final int depth, final String name)
+    {
+        final String expected = this.names.get(depth);
+        return ANY.equals(expected) || expected.equals(name);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "/" + Joiner.on('/').join(this.names);
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2013 Christof Lemke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xml.entity.serilalize;
+
+import javax.annotation.Nonnull;
+
+import xml.entity.immutableelement.ImmutableElementFactory;
+
+/**
+ * Builds one tree for each element matching a {@link RecordPath} and hands it
+ * to a {@link RecordHandler}. Content outside of the records is dropped
+ * without creating any nodes.
+ */
+final class RecordSplitter implements ElementSink
+{
+    private final RecordPath path;
+    private final RecordHandler handler;
+    private final TreeBuilder builder;
+    /** The number of open elements */
+    private int depth = 0;
+    /** The number of open elements, from the root, that match the path */
+    private int matched = 0;
+
+    RecordSplitter(
+            @Nonnull final RecordPath path,
+            @Nonnull final ImmutableElementFactory factory,
+            @Nonnull final RecordHandler handler)
+    {
+        this.path = path;
+        this.handler = handler;
+        this.builder = new TreeBuilder(factory);
+    }
+
+    @Override
+    public void startElement(final String name)
+    {
+        if(this.matched == this.depth && this.depth < this.path.size() && this.path.matches(this.depth, name))
+        {
+            this.matched++;
+        }
+        this.depth++;
+        if(inRecord())
+        {
+            this.builder.startElement(name);
+        }
+    }
+
+    @Override
+    public void attribute(final String name, final String value)
+    {
+        if(inRecord())
+        {
+            this.builder.attribute(name, value);
+        }
+    }
+
+    @Override
+    public void text(final String value)
+    {
+        if(inRecord())
+        {
+            this.builder.text(value);
+        }
+    }
+
+    @Override
+    public void endElement()
+    {
+        if(inRecord())
+        {
+            this.builder.endElement();
+            if(!this.builder.isOpen())
+            {
+                this.handler.onRecord(this.builder.root());
+            }
+        }
+        this.depth--;
+        if(this.matched > this.depth)
+        {
+            this.matched = this.depth;
+        }
+    }
+
+    private boolean inRecord()
+    {
+        return this.matched == this.path.size();
+    }
+}
@@ -18,10 +18,15 @@ package xml.entity.serilalize;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
 
+import javax.annotation.Nonnull;
 import javax.xml.stream.XMLStreamException;
 
+import com.google.common.collect.ImmutableList;
+
 public interface SerializationContext
 {
 
@@ -29,6 +34,23 @@ public interface SerializationContext
 
     public void toStream(OutputStream stream, Charset charset) throws XMLStreamException, IOException;
 
+    /**
+     * Write the document as UTF-8 to a channel.
+     * 
+     * @param channel
+     *            A blocking channel
+     */
+    public void toChannel(@Nonnull WritableByteChannel channel) throws XMLStreamException, IOException;
+
+    /**
+     * Encode the document as UTF-8 into direct buffers. The buffers are ready
+     * to be read, for instance by a gathering write.
+     * 
+     * @return The buffers in document order
+     */
+    @Nonnull
+    public ImmutableList<ByteBuffer> toByteBuffers() throws XMLStreamException;
+
     public String toString();
 
 }
@@ -15,15 +15,9 @@
  */
 package xml.entity.serilalize;
 
-import static com.google.common.base.Predicates.not;
-import static com.google.common.collect.Iterables.filter;
-import static xml.entity.immutableelement.ImmutableElements.isAttribute;
-import static xml.entity.immutableelement.ImmutableElements.isText;
-
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
-import java.io.StringWriter;
 import java.io.Writer;
 import java.nio.charset.Charset;
 
@@ -32,7 +26,7 @@ import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamWriter;
 
 import xml.entity.immutableelement.ImmutableElement;
-import xml.entity.immutableelement.ImmutableElements;
+import xml.entity.immutableelement.NodeKind;
 
 import com.google.common.collect.ImmutableList;
 
@@ -55,7 +49,7 @@ class SerializerImpl implements Serializer
         return new SerializationContextImpl(element);
 	}
 
-    private class SerializationContextImpl implements SerializationContext
+    private class SerializationContextImpl extends AbstractSerializationContext
 	{
         private final ImmutableElement element;
 
@@ -89,25 +83,19 @@ class SerializerImpl implements Serializer
             writer.flush();
         }
 
-        @Override
-        public String toString()
-		{
-			final StringWriter writer = new StringWriter();
-			try
-			{
-				toWriter(writer);
-			}
-            catch(final XMLStreamException e)
-			{
-				throw new RuntimeException(e);
-			}
-			return writer.toString();
-		}
-
         private void writeInternal(final XMLStreamWriter streamWriter, final ImmutableElement current) throws XMLStreamException
 		{
-            final ImmutableList<ImmutableElement> nonAttrChildren = ImmutableList.copyOf(filter(current.children(), not(isAttribute())));
-            if(nonAttrChildren.isEmpty())
+            final ImmutableList<ImmutableElement> children = current.children();
+            boolean empty = true;
+            for(final ImmutableElement child : children)
+            {
+                if(child.kind() != NodeKind.ATTRIBUTE)
+                {
+                    empty = false;
+                    break;
+                }
+            }
+            if(empty)
             {
                 streamWriter.writeEmptyElement(current.name());
             }
@@ -115,22 +103,25 @@ class SerializerImpl implements Serializer
             {
                 streamWriter.writeStartElement(current.name());
             }
-            for(final ImmutableElement attr : filter(current.children(), isAttribute()))
+            for(final ImmutableElement attr : children)
 			{
-                streamWriter.writeAttribute(attr.name().replaceFirst("@", ""), attr.value());
+                if(attr.kind() == NodeKind.ATTRIBUTE)
+                {
+                    streamWriter.writeAttribute(attr.name().substring(1), attr.value());
+                }
 			}
-            for(final ImmutableElement child : nonAttrChildren)
+            for(final ImmutableElement child : children)
             {
-                if(isText().apply(child))
+                if(child.kind() == NodeKind.TEXT)
                 {
                     streamWriter.writeCharacters(child.value());
                 }
-                if(ImmutableElements.isInternal().apply(child))
+                else if(child.kind() == NodeKind.ELEMENT)
                 {
                     writeInternal(streamWriter, child);
                 }
             }
-            if(!nonAttrChildren.isEmpty())
+            if(!empty)
             {
                 streamWriter.writeEndElement();
             }
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2013 Christof Lemke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xml.entity.serilalize;
+
+import java.util.concurrent.ExecutorService;
+
+import javax.annotation.Nonnull;
+
+/**
+ * The available {@link Serializer} implementations.
+ */
+public final class Serializers
+{
+    private Serializers()
+    {
+    }
+
+    /**
+     * @return A serializer writing through an
+     *         {@link javax.xml.stream.XMLStreamWriter}
+     */
+    @Nonnull
+    public static Serializer xmlStreamWriter()
+    {
+        return SerializerImpl.create();
+    }
+
+    /**
+     * A serializer writing the markup directly, UTF-8 output is encoded
+     * without an intermediate {@link java.io.Writer}. The output is the same as
+     * the output of {@link #xmlStreamWriter()}. Unpaired surrogates in text
+     * and attribute values are written as character references, in element
+     * and attribute names they can not be encoded and are replaced by '?' like
+     * the {@link javax.xml.stream.XMLStreamWriter} does.
+     * 
+     * @return A direct serializer
+     */
+    @Nonnull
+    public static Serializer utf8()
+    {
+        return Utf8SerializerImpl.create();
+    }
+
+    /**
+     * A {@link #utf8()} serializer that caches the UTF-8 encoding of subtrees.
+     * Serializing a new version of a document only encodes the nodes that were
+     * replaced by the update, the other subtrees are copied from the cache.
+     * 
+     * @param maximumBytes
+     *            The maximum size of the cache
+     * @return A caching serializer
+     */
+    @Nonnull
+    public static Serializer cachingUtf8(final long maximumBytes)
+    {
+        return CachingSerializerImpl.create(maximumBytes);
+    }
+
+    /**
+     * A {@link #utf8()} serializer that encodes the children of wide root
+     * elements in parallel. The output is the same as the sequential output.
+     * 
+     * @param executor
+     *            Runs the encoding, it is not shut down by the serializer
+     * @return A parallel serializer
+     */
+    @Nonnull
+    public static Serializer parallelUtf8(@Nonnull final ExecutorService executor)
+    {
+        return ParallelSerializerImpl.create(executor);
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2013 Christof Lemke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xml.entity.serilalize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import xml.entity.immutableelement.ImmutableElementFactory;
+
+/**
+ * A {@link Parser} pulling events from an {@link XMLStreamReader}. Produces
+ * the same trees as {@link ParserImpl}.
+ */
+class StaxParserImpl extends AbstractParser
+{
+    private final XMLInputFactory inputFactory;
+
+    StaxParserImpl(final ImmutableElementFactory factory, final Projection projection, final WhitespacePolicy whitespace, final DocumentStorage storage)
+    {
+        super(factory, projection, whitespace, storage);
+        this.inputFactory = XMLInputFactory.newInstance();
+        this.inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.FALSE);
+        this.inputFactory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+    }
+
+    public static Parser create(final ImmutableElementFactory factory)
+    {
+        return new StaxParserImpl(factory, Projection.all(), WhitespacePolicy.TRIM, DocumentStorage.OBJECTS);
+    }
+
+    @Override
+    AbstractParser copy(final ImmutableElementFactory factory, final Projection projection, final WhitespacePolicy whitespace, final DocumentStorage storage)
+    {
+        return new StaxParserImpl(factory, projection, whitespace, storage);
+    }
+
+    @Override
+    void parse(final Reader reader, final ElementSink sink) throws IOException
+    {
+        final XMLStreamReader streamReader;
+        try
+        {
+            streamReader = this.inputFactory.createXMLStreamReader(reader);
+        }
+        catch(final XMLStreamException e)
+        {
+            throw new RuntimeException("failed to create parser", e);
+        }
+        read(streamReader, sink, new TextBuffer(whitespace()));
+    }
+
+    @Override
+    void parse(final InputStream stream, final ElementSink sink) throws IOException
+    {
+        final XMLStreamReader streamReader;
+        try
+        {
+            streamReader = this.inputFactory.createXMLStreamReader(stream);
+        }
+        catch(final XMLStreamException e)
+        {
+            throw new RuntimeException("failed to create parser", e);
+        }
+        read(streamReader, sink, new TextBuffer(whitespace()));
+    }
+
+    private static void read(final XMLStreamReader streamReader, final ElementSink sink, final TextBuffer text)
+    {
+        try
+        {
+            try
+            {
+                readEvents(streamReader, sink, text);
+            }
+            finally
+            {
+                streamReader.close();
+            }
+        }
+        catch(final XMLStreamException e)
+        {
+            throw new RuntimeException("failed to parse", e);
+        }
+    }
+
+    private static void readEvents(final XMLStreamReader reader, final ElementSink sink, final TextBuffer text) throws XMLStreamException
+    {
+        int depth = 0;
+        while(reader.hasNext())
+        {
+            switch(reader.next())
+            {
+                case XMLStreamConstants.START_ELEMENT:
+                    text.flush(sink);
+                    sink.startElement(reader.getLocalName());
+                    depth++;
+                    for(int i = 0; i < reader.getAttributeCount(); i++)
+                    {
+                        sink.attribute(attributeName(reader, i), reader.getAttributeValue(i));
+                    }
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    text.flush(sink);
+                    sink.endElement();
+                    depth--;
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                    if(depth == 0)
+                    {
+                        // whitespace around the root element
+                        break;
+                    }
+                    text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Without namespace awareness the element name is reported as written but
+     * the attribute prefix is split from the local name.
+     */
+    private static String attributeName(final XMLStreamReader reader, final int index)
+    {
+        final String prefix = reader.getAttributePrefix(index);
+        final String localName = reader.getAttributeLocalName(index);
+        if(prefix == null || prefix.isEmpty())
+        {
+            return localName;
+        }
+        return prefix + ":" + localName;
+    }
+}
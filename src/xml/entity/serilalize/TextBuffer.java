@@ -0,0 +1,65 @@
+/*
+ * Copyright 2013 Christof Lemke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xml.entity.serilalize;
+
+import java.util.Arrays;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Collects the text between two tags, which engines may report in several
+ * chunks, in a char array that is reused for the whole document.
+ */
+final class TextBuffer
+{
+    private final WhitespacePolicy policy;
+    private char[] chars = new char[256];
+    private int length = 0;
+
+    TextBuffer(@Nonnull final WhitespacePolicy policy)
+    {
+        this.policy = policy;
+    }
+
+    void append(final char[] text, final int start, final int count)
+    {
+        final int required = this.length + count;
+        if(required > this.chars.length)
+        {
+            this.chars = Arrays.copyOf(this.chars, Math.max(required, this.chars.length * 2));
+        }
+        System.arraycopy(text, start, this.chars, this.length, count);
+        this.length = required;
+    }
+
+    /**
+     * Hand the collected text to the sink, as far as the whitespace policy
+     * keeps it, and empty the buffer.
+     */
+    void flush(@Nonnull final ElementSink sink)
+    {
+        if(this.length == 0)
+        {
+            return;
+        }
+        final String text = this.policy.apply(this.chars, this.length);
+        this.length = 0;
+        if(text != null)
+        {
+            sink.text(text);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2013 Christof Lemke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xml.entity.serilalize;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import xml.entity.immutableelement.ImmutableElement;
+import xml.entity.immutableelement.ImmutableElementFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Builds a tree of {@link ImmutableElement}s from a sequence of start, end,
+ * attribute and text events. The element names and the child lists of the open
+ * elements are kept in arrays indexed by depth, the child lists are cleared and
+ * reused for the next element at the same depth.
+ */
+final class TreeBuilder implements DocumentBuilder
+{
+    private static final int INITIAL_DEPTH = 16;
+
+    private final ImmutableElementFactory factory;
+    private String[] names = new String[INITIAL_DEPTH];
+    private ArrayList<?>[] levels = new ArrayList<?>[INITIAL_DEPTH];
+    private int depth = 0;
+    private ImmutableElement root = null;
+
+    TreeBuilder(@Nonnull final ImmutableElementFactory factory)
+    {
+        this.factory = Preconditions.checkNotNull(factory);
+    }
+
+    @Override
+    public void startElement(@Nonnull final String name)
+    {
+        if(this.depth == this.names.length)
+        {
+            this.names = Arrays.copyOf(this.names, this.depth * 2);
+            this.levels = Arrays.copyOf(this.levels, this.depth * 2);
+        }
+        if(this.levels[this.depth] == null)
+        {
+            this.levels[this.depth] = new ArrayList<ImmutableElement>();
+        }
+        this.names[this.depth] = name;
+        this.depth++;
+    }
+
+    @Override
+    public void attribute(@Nonnull final String name, @Nonnull final String value)
+    {
+        current().add(this.factory.createAttr(name, value));
+    }
+
+    @Override
+    public void text(@Nonnull final String value)
+    {
+        current().add(this.factory.createText(value));
+    }
+
+    @Override
+    public void endElement()
+    {
+        Preconditions.checkState(this.depth > 0, "no open element");
+        this.depth--;
+        final ArrayList<ImmutableElement> children = level(this.depth);
+        final ImmutableElement element = this.factory.createNode(this.names[this.depth], ImmutableList.copyOf(children));
+        children.clear();
+        this.names[this.depth] = null;
+        if(this.depth == 0)
+        {
+            this.root = element;
+        }
+        else
+        {
+            current().add(element);
+        }
+    }
+
+    /**
+     * @return true if there is at least one element that has not been closed
+     */
+    boolean isOpen()
+    {
+        return this.depth > 0;
+    }
+
+    @Override
+    @Nullable
+    public ImmutableElement root()
+    {
+        return this.root;
+    }
+
+    private ArrayList<ImmutableElement> current()
+    {
+        Preconditions.checkState(this.depth > 0, "no open element");
+        return level(this.depth - 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    private ArrayList<ImmutableElement> level(final int index)
+    {
+        return (ArrayList<ImmutableElement>) this.levels[index];
+    }
+}
@@ -0,0 +1,352 @@
+/*
+ * Copyright 2013 Christof Lemke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xml.entity.serilalize;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import xml.entity.immutableelement.ImmutableElement;
+
+/**
+ * Encodes the output as UTF-8 into a byte array. The array is passed on to an
+ * {@link OutputStream} when it is full, or grown if there is no stream.
+ */
+final class Utf8Output implements XmlOutput
+{
+    static final int BUFFER_SIZE = 8192;
+    /** The most bytes a single char can be written as, "&quot;" */
+    private static final int MAX_CHAR_BYTES = 6;
+
+    @Nullable private final OutputStream target;
+    private byte[] buffer;
+    private int position = 0;
+
+    /**
+     * Write to a stream.
+     */
+    Utf8Output(@Nonnull final OutputStream target)
+    {
+        this.target = target;
+        this.buffer = new byte[BUFFER_SIZE];
+    }
+
+    /**
+     * Keep all output in memory.
+     */
+    Utf8Output()
+    {
+        this.target = null;
+        this.buffer = new byte[BUFFER_SIZE];
+    }
+
+    @Override
+    public void writeMarkup(final char c) throws IOException
+    {
+        require(1);
+        this.buffer[this.position++] = (byte) c;
+    }
+
+    @Override
+    public void writeName(final String name, final int start) throws IOException
+    {
+        final int length = name.length();
+        require(length - start);
+        int i = start;
+        // ASCII names are copied without any further checks
+        for(; i < length; i++)
+        {
+            final char c = name.charAt(i);
+            if(c >= 0x80)
+            {
+                break;
+            }
+            this.buffer[this.position++] = (byte) c;
+        }
+        for(; i < length; i++)
+        {
+            i = writeChar(name, i);
+        }
+    }
+
+    @Override
+    public void writeEscaped(final String value, final boolean attribute) throws IOException
+    {
+        final int length = value.length();
+        for(int i = 0; i < length; i++)
+        {
+            final char c = value.charAt(i);
+            if(c >= 0x80)
+            {
+                if(isSurrogate(c))
+                {
+                    i = writeReference(value, i);
+                }
+                else
+                {
+                    i = writeChar(value, i);
+                }
+                continue;
+            }
+            switch(c)
+            {
+                case '&':
+                    writeEntity("&amp;");
+                    break;
+                case '<':
+                    writeEntity("&lt;");
+                    break;
+                case '>':
+                    writeEntity("&gt;");
+                    break;
+                case '"':
+                    if(attribute)
+                    {
+                        writeEntity("&quot;");
+                    }
+                    else
+                    {
+                        require(1);
+                        this.buffer[this.position++] = (byte) c;
+                    }
+                    break;
+                default:
+                    require(1);
+                    this.buffer[this.position++] = (byte) c;
+            }
+        }
+    }
+
+    @Override
+    public boolean writeCached(final ImmutableElement element)
+    {
+        return false;
+    }
+
+    @Override
+    public void elementWritten(final ImmutableElement element)
+    {
+    }
+
+    @Override
+    public void flush() throws IOException
+    {
+        if(this.target != null)
+        {
+            this.target.write(this.buffer, 0, this.position);
+            this.position = 0;
+            this.target.flush();
+        }
+    }
+
+    /**
+     * Write a single byte.
+     */
+    void writeByte(final int b) throws IOException
+    {
+        require(1);
+        this.buffer[this.position++] = (byte) b;
+    }
+
+    /**
+     * @return The number of bytes {@link #writeName(String, int)} writes for
+     *         the given name
+     */
+    static int utf8Length(final String name, final int start)
+    {
+        final int length = name.length();
+        int bytes = 0;
+        for(int i = start; i < length; i++)
+        {
+            final char c = name.charAt(i);
+            if(c < 0x80)
+            {
+                bytes += 1;
+            }
+            else if(c < 0x800)
+            {
+                bytes += 2;
+            }
+            else if(Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(name.charAt(i + 1)))
+            {
+                bytes += 4;
+                i++;
+            }
+            else if(isSurrogate(c))
+            {
+                bytes += 1;
+            }
+            else
+            {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Write bytes that are already encoded.
+     */
+    void writeBytes(@Nonnull final byte[] bytes) throws IOException
+    {
+        if(this.target != null && bytes.length > this.buffer.length)
+        {
+            this.target.write(this.buffer, 0, this.position);
+            this.position = 0;
+            this.target.write(bytes);
+            return;
+        }
+        require(bytes.length);
+        System.arraycopy(bytes, 0, this.buffer, this.position, bytes.length);
+        this.position += bytes.length;
+    }
+
+    /**
+     * @return The number of bytes in the buffer
+     */
+    int position()
+    {
+        return this.position;
+    }
+
+    /**
+     * @return A copy of the output, only for in memory output
+     */
+    byte[] toByteArray()
+    {
+        return Arrays.copyOf(this.buffer, this.position);
+    }
+
+    /**
+     * @return A copy of the output from the given position, only for in memory
+     *         output
+     */
+    byte[] copyFrom(final int start)
+    {
+        return Arrays.copyOfRange(this.buffer, start, this.position);
+    }
+
+    /**
+     * Write the output to a stream, only for in memory output.
+     */
+    void writeTo(@Nonnull final OutputStream stream) throws IOException
+    {
+        stream.write(this.buffer, 0, this.position);
+        stream.flush();
+    }
+
+    private void writeEntity(final String entity) throws IOException
+    {
+        require(entity.length());
+        for(int i = 0; i < entity.length(); i++)
+        {
+            this.buffer[this.position++] = (byte) entity.charAt(i);
+        }
+    }
+
+    /**
+     * Write the surrogate at index i, or the pair starting at i, as a character
+     * reference like the JDK writer does.
+     * 
+     * @return The index of the last character that was written
+     */
+    private int writeReference(final String value, final int i) throws IOException
+    {
+        final char c = value.charAt(i);
+        if(Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1)))
+        {
+            writeEntity("&#x" + Integer.toHexString(Character.toCodePoint(c, value.charAt(i + 1))) + ";");
+            return i + 1;
+        }
+        writeEntity("&#x" + Integer.toHexString(c) + ";");
+        return i;
+    }
+
+    /**
+     * Encode the character at index i, which may be the first of a surrogate
+     * pair.
+     * 
+     * @return The index of the last character that was written
+     */
+    private int writeChar(final String value, final int i) throws IOException
+    {
+        require(MAX_CHAR_BYTES);
+        final char c = value.charAt(i);
+        if(c < 0x80)
+        {
+            this.buffer[this.position++] = (byte) c;
+            return i;
+        }
+        if(c < 0x800)
+        {
+            this.buffer[this.position++] = (byte) (0xC0 | c >> 6);
+            this.buffer[this.position++] = (byte) (0x80 | c & 0x3F);
+            return i;
+        }
+        if(Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1)))
+        {
+            final int codePoint = Character.toCodePoint(c, value.charAt(i + 1));
+            this.buffer[this.position++] = (byte) (0xF0 | codePoint >> 18);
+            this.buffer[this.position++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+            this.buffer[this.position++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+            this.buffer[this.position++] = (byte) (0x80 | codePoint & 0x3F);
+            return i + 1;
+        }
+        if(isSurrogate(c))
+        {
+            // only names get here, values write unpaired surrogates as
+            // references; the JDK writer replaces them in names as well
+            this.buffer[this.position++] = '?';
+            return i;
+        }
+        this.buffer[this.position++] = (byte) (0xE0 | c >> 12);
+        this.buffer[this.position++] = (byte) (0x80 | c >> 6 & 0x3F);
+        this.buffer[this.position++] = (byte) (0x80 | c & 0x3F);
+        return i;
+    }
+
+    /**
+     * Make room for the given number of bytes.
+     */
+    private void require(final int count) throws IOException
+    {
+        if(this.position + count <= this.buffer.length)
+        {
+            return;
+        }
+        if(this.target != null)
+        {
+            this.target.write(this.buffer, 0, this.position);
+            this.position = 0;
+            if(count <= this.buffer.length)
+            {
+                return;
+            }
+        }
+        this.buffer = Arrays.copyOf(this.buffer, Math.max(this.position + count, this.buffer.length * 2));
+    }
+
+    /**
+     * Character.isSurrogate is not available on Java 6.
+     */
+    private static boolean isSurrogate(final char c)
+    {
+        return c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE;
+    }
+}
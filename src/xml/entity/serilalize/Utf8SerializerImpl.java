@@ -0,0 +1,183 @@
+/*
+ * Copyright 2013 Christof Lemke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xml.entity.serilalize;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+import javax.annotation.Nonnull;
+import javax.xml.stream.XMLStreamException;
+
+import xml.entity.immutableelement.ImmutableElement;
+import xml.entity.immutableelement.NodeKind;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+
+/**
+ * A {@link Serializer} writing the markup directly instead of going through an
+ * {@link javax.xml.stream.XMLStreamWriter}. UTF-8 output is encoded straight
+ * into a byte buffer. The output is the same as the output of
+ * {@link SerializerImpl}.
+ */
+class Utf8SerializerImpl implements Serializer
+{
+    public static Serializer create()
+    {
+        return new Utf8SerializerImpl();
+    }
+
+    @Override
+    public SerializationContext serialize(@Nonnull final ImmutableElement element)
+    {
+        return new SerializationContextImpl(Preconditions.checkNotNull(element));
+    }
+
+    /**
+     * Write the element and all descendants.
+     */
+    static void write(final XmlOutput output, final ImmutableElement current) throws IOException
+    {
+        if(output.writeCached(current))
+        {
+            return;
+        }
+        if(writeStartTag(output, current))
+        {
+            for(final ImmutableElement child : current.children())
+            {
+                writeContent(output, child);
+            }
+            writeEndTag(output, current);
+        }
+        output.elementWritten(current);
+    }
+
+    /**
+     * Write the start tag with the attributes of the element, or the empty
+     * element tag if the element has no other children.
+     * 
+     * @return true if the element has content and needs an end tag
+     */
+    static boolean writeStartTag(final XmlOutput output, final ImmutableElement current) throws IOException
+    {
+        output.writeMarkup('<');
+        output.writeName(current.name(), 0);
+        boolean empty = true;
+        for(final ImmutableElement child : current.children())
+        {
+            if(child.kind() == NodeKind.ATTRIBUTE)
+            {
+                output.writeMarkup(' ');
+                // skip the '@'
+                output.writeName(child.name(), 1);
+                output.writeMarkup('=');
+                output.writeMarkup('"');
+                output.writeEscaped(child.value(), true);
+                output.writeMarkup('"');
+            }
+            else
+            {
+                empty = false;
+            }
+        }
+        if(empty)
+        {
+            output.writeMarkup('/');
+        }
+        output.writeMarkup('>');
+        return !empty;
+    }
+
+    /**
+     * Write a child that is not an attribute.
+     */
+    static void writeContent(final XmlOutput output, final ImmutableElement child) throws IOException
+    {
+        switch(child.kind())
+        {
+            case TEXT:
+                output.writeEscaped(child.value(), false);
+                break;
+            case ELEMENT:
+                write(output, child);
+                break;
+            default:
+                break;
+        }
+    }
+
+    static void writeEndTag(final XmlOutput output, final ImmutableElement current) throws IOException
+    {
+        output.writeMarkup('<');
+        output.writeMarkup('/');
+        output.writeName(current.name(), 0);
+        output.writeMarkup('>');
+    }
+
+    /**
+     * Write the element as UTF-8.
+     */
+    void encode(final ImmutableElement element, final OutputStream stream) throws IOException
+    {
+        final Utf8Output output = new Utf8Output(stream);
+        write(output, element);
+        output.flush();
+    }
+
+    private class SerializationContextImpl extends AbstractSerializationContext
+    {
+        private final ImmutableElement element;
+
+        SerializationContextImpl(final ImmutableElement element)
+        {
+            this.element = element;
+        }
+
+        @Override
+        public void toWriter(final Writer writer) throws XMLStreamException
+        {
+            try
+            {
+                final CharOutput output = new CharOutput(writer);
+                write(output, this.element);
+                output.flush();
+            }
+            catch(final IOException e)
+            {
+                throw new XMLStreamException(e);
+            }
+        }
+
+        @Override
+        public void toStream(final OutputStream stream, final Charset charset) throws XMLStreamException, IOException
+        {
+            if(Charsets.UTF_8.equals(charset))
+            {
+                encode(this.element, stream);
+            }
+            else
+            {
+                final OutputStreamWriter writer = new OutputStreamWriter(stream, charset);
+                toWriter(writer);
+                writer.flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2013 Christof Lemke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xml.entity.serilalize;
+
+import javax.annotation.Nullable;
+
+/**
+ * Defines how the text between two tags is turned into a text node.
+ */
+public enum WhitespacePolicy
+{
+    /**
+     * Keep the text as it is, including text that is only whitespace.
+     */
+    PRESERVE
+    {
+        @Override
+        String apply(final char[] chars, final int length)
+        {
+            return new String(chars, 0, length);
+        }
+    },
+    /**
+     * Remove leading and trailing whitespace. Nothing is kept of text that is
+     * only whitespace.
+     */
+    TRIM
+    {
+        @Override
+        String apply(final char[] chars, final int length)
+        {
+            int begin = 0;
+            int end = length;
+            while(begin < end && isWhitespace(chars[begin]))
+            {
+                begin++;
+            }
+            while(end > begin && isWhitespace(chars[end - 1]))
+            {
+                end--;
+            }
+            return begin == end ? null : new String(chars, begin, end - begin);
+        }
+    },
+    /**
+     * Keep the text as it is, unless it is only whitespace.
+     */
+    DROP_WHITESPACE
+    {
+        @Override
+        String apply(final char[] chars, final int length)
+        {
+            for(int i = 0; i < length; i++)
+            {
+                if(!isWhitespace(chars[i]))
+                {
+                    return new String(chars, 0, length);
+                }
+            }
+            return null;
+        }
+    };
+
+    /**
+     * @param chars
+     *            The text, starting at index 0
+     * @param length
+     *            The length of the text
+     * @return The value of the text node or null if no node should be created
+     */
+    @Nullable
+    abstract String apply(char[] chars, int length);
+
+    /**
+     * Same as {@link String#trim()}
+     */
+    private static boolean isWhitespace(final char c)
+    {
+        return c <= ' ';
+    }
+}
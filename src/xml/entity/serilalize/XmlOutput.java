@@ -0,0 +1,74 @@
+/*
+ * Copyright 2013 Christof Lemke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xml.entity.serilalize;
+
+import java.io.IOException;
+
+import javax.annotation.Nonnull;
+
+import xml.entity.immutableelement.ImmutableElement;
+
+/**
+ * The target of {@link Utf8SerializerImpl}. Implementations buffer the output
+ * and escape the characters the same way as the {@link
+ * javax.xml.stream.XMLStreamWriter} of the JDK does.
+ */
+interface XmlOutput
+{
+    /**
+     * Write a markup character, must be ASCII.
+     */
+    void writeMarkup(char c) throws IOException;
+
+    /**
+     * Write a name without escaping.
+     * 
+     * @param name
+     *            The name
+     * @param start
+     *            The index of the first character to write
+     */
+    void writeName(@Nonnull String name, int start) throws IOException;
+
+    /**
+     * Write text, escaping '&amp;', '&lt;' and '&gt;' and in attributes
+     * '&quot;'.
+     */
+    void writeEscaped(@Nonnull String value, boolean attribute) throws IOException;
+
+    /**
+     * Called before an element is written.
+     * 
+     * @param element
+     *            The element
+     * @return true if the output already contains the element, it must not be
+     *         written again
+     */
+    boolean writeCached(@Nonnull ImmutableElement element) throws IOException;
+
+    /**
+     * Called after an element was written.
+     * 
+     * @param element
+     *            The element
+     */
+    void elementWritten(@Nonnull ImmutableElement element);
+
+    /**
+     * Pass all buffered output on to the target.
+     */
+    void flush() throws IOException;
+}
@@ -21,6 +21,7 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 import xml.entity.immutableelement.ImmutableElement;
+import xml.entity.select.dsl.DSL;
 
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
@@ -73,19 +74,15 @@ public class AddNamespacesTransformation implements ElementTransformation
 
         final SetView<String> missingNamespaces = Sets.difference(prefixToUrl.keySet(), declaredNamespaces);
 
-        ImmutableElement result = input;
+        DSL.Update.NodeUpdate update = input.update().from("/*/");
         for(final String missing : missingNamespaces)
         {
             final String attrName = "xmlns:" + missing;
             final String url = prefixToUrl.get(missing);
-            result = result
-                    .update()
-                    .from("/*/")
-                    .setAttr(attrName, url)
-                    .element();
+            update = update.setAttr(attrName, url);
         }
 
-        return result;
+        return update.element();
     }
 
 }
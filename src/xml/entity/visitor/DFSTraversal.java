@@ -15,12 +15,10 @@
  */
 package xml.entity.visitor;
 
-import static com.google.common.base.Predicates.and;
-import static com.google.common.base.Predicates.not;
-import static com.google.common.collect.Iterables.filter;
-import static xml.entity.immutableelement.ImmutableElements.isAttribute;
-import static xml.entity.immutableelement.ImmutableElements.isText;
 import xml.entity.immutableelement.ImmutableElement;
+import xml.entity.immutableelement.NodeKind;
+
+import com.google.common.collect.ImmutableList;
 
 public class DFSTraversal
 {
@@ -58,17 +56,28 @@ public class DFSTraversal
     public <E extends Exception> void visit(final ImmutableElement element, final ElementVisitor visitor)
 	{
 		visitor.onElementStart(element);
-        for(final ImmutableElement child : filter(element.children(), isAttribute()))
+        // attributes first, then text, then the child elements
+        final ImmutableList<ImmutableElement> children = element.children();
+        for(final ImmutableElement child : children)
 		{
-			visitor.onAttribute(child);
+            if(child.kind() == NodeKind.ATTRIBUTE)
+            {
+                visitor.onAttribute(child);
+            }
 		}
-        for(final ImmutableElement child : filter(element.children(), isText()))
+        for(final ImmutableElement child : children)
 		{
-			visitor.onText(child);
+            if(child.kind() == NodeKind.TEXT)
+            {
+                visitor.onText(child);
+            }
 		}
-        for(final ImmutableElement child : filter(element.children(), and(not(isAttribute()), not(isText()))))
+        for(final ImmutableElement child : children)
 		{
-			visit(child, visitor);
+            if(child.kind() == NodeKind.ELEMENT)
+            {
+                visit(child, visitor);
+            }
 		}
 		visitor.onElementStop(element);
 	}
@@ -15,6 +15,7 @@
  */
 package xml.entity.visitor;
 
+import java.util.List;
 import java.util.Map;
 
 import org.slf4j.Logger;
@@ -22,19 +23,46 @@ import org.slf4j.LoggerFactory;
 
 import xml.entity.immutableelement.ImmutableElement;
 import xml.entity.immutableelement.ImmutableElementFactory;
-import xml.entity.immutableelement.ImmutableElements;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableList.Builder;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import com.google.common.collect.Sets;
-import com.google.common.collect.Sets.SetView;
 
-public abstract class ReplaceVisitor implements SelectionVisitor
+/**
+ * Builds a copy of the visited tree with the replacements registered while
+ * matching. Only the ancestors of replaced nodes are rebuilt, every other
+ * subtree is shared with the original tree. Subclasses register replacements
+ * in {@link #match(ImmutableElement)}, callers that drive the traversal
+ * themselves can call {@link #replace(ImmutableElement, ImmutableElement)}
+ * directly.
+ */
+public class ReplaceVisitor implements SelectionVisitor
 {
+    /**
+     * A node on the path from the root to the current node.
+     */
+    private static final class Frame
+    {
+        ImmutableElement element;
+        boolean replaced;
+        ImmutableElement replacement;
+        /** The replaced children, null as long as there are none */
+        Map<ImmutableElement, ImmutableElement> children;
+
+        void reset(final ImmutableElement element)
+        {
+            this.element = element;
+            this.replaced = false;
+            this.replacement = null;
+            this.children = null;
+        }
+    }
 
     private final Logger logger = LoggerFactory.getLogger(getClass());
-    private final Map<ImmutableElement, ImmutableElement> replace = Maps.newHashMap();
+    /** Reused between siblings, the first depth entries are in use */
+    private final List<Frame> frames = Lists.newArrayList();
+    private int depth = 0;
     private ImmutableElement root;
     private final ImmutableElementFactory factory;
 
@@ -49,72 +77,101 @@ public abstract class ReplaceVisitor implements SelectionVisitor
     public final void mismatch(final ImmutableElement element)
     {}
 
+    /**
+     * Does nothing, override to replace matching nodes.
+     */
     @Override
-    public final void enterChild(final ImmutableElement element)
+    public void match(final ImmutableElement element)
     {}
 
+    @Override
+    public final void enterChild(final ImmutableElement element)
+    {
+        if(this.depth == this.frames.size())
+        {
+            this.frames.add(new Frame());
+        }
+        this.frames.get(this.depth++).reset(element);
+    }
+
     @Override
     public final void leaveChild(final ImmutableElement element)
     {
-        if(!ImmutableElements.isInternal().apply(element))
+        final Frame frame = this.frames.get(--this.depth);
+        ImmutableElement result = frame.replaced ? frame.replacement : element;
+        if(frame.children != null && result != null)
         {
-            return;
+            result = replaceChildren(result, frame.children);
         }
-        // test if replacements for children exist
-        final SetView<ImmutableElement> intersection = Sets.intersection(Sets.newHashSet(element.children()), this.replace.keySet());
-        if(intersection.isEmpty())
+        frame.reset(null);
+        if(this.depth == 0)
+        {
+            // the root is the last node left
+            this.root = result;
+        }
+        else if(result != element)
+        {
+            addChild(this.frames.get(this.depth - 1), element, result);
+        }
+    }
+
+    private ImmutableElement replaceChildren(final ImmutableElement element, final Map<ImmutableElement, ImmutableElement> replacements)
+    {
+        final Builder<ImmutableElement> builder = ImmutableList.builder();
+        for(final ImmutableElement e : element.children())
         {
-            // always set root to the last node left
-            if(this.replace.containsKey(element))
+            if(replacements.containsKey(e))
             {
-                // if the root node has been replaced
-                this.root = this.replace.get(element);
-                logger.debug("replace root: {}, with: {}", element, this.root);
+                final ImmutableElement repacement = replacements.get(e);
+                logger.debug("replace: {}, with: {}", e, repacement);
+                if(repacement != null)
+                {
+                    builder.add(repacement);
+                }
             }
             else
             {
-                // if the node is unmodified
-                this.root = element;
+                builder.add(e);
             }
         }
-        else
+        return factory.createNode(element.name(), builder.build());
+    }
+
+    private static void addChild(final Frame frame, final ImmutableElement child, final ImmutableElement replacement)
+    {
+        if(frame.children == null)
         {
-            // replace children
-            final Builder<ImmutableElement> builder = ImmutableList.builder();
-            for(final ImmutableElement e : element.children())
-            {
-                if(this.replace.containsKey(e))
-                {
-                    final ImmutableElement repacement = this.replace.remove(e);
-                    logger.debug("replace: {}, with: {}", e, repacement);
-                    if(repacement == null)
-                    {
-                        // skip
-                    }
-                    else
-                    {
-                        builder.add(repacement);
-                    }
-                }
-                else
-                {
-                    builder.add(e);
-                }
-            }
-            final ImmutableElement internalElement = factory.createNode(element.name(), builder.build());
-            replace(element, internalElement);
-            this.root = internalElement;
+            frame.children = Maps.newHashMap();
         }
+        frame.children.put(child, replacement);
     }
 
+    /**
+     * Replace a node when its parent is left. The node must be the current
+     * node or one of its children.
+     * 
+     * @param old
+     *            The node to replace
+     * @param newElement
+     *            The replacement, or null to remove the node
+     */
     public void replace(final ImmutableElement old, final ImmutableElement newElement)
     {
         logger.debug("add replacement: {}, with: {}", old, newElement);
-        this.replace.put(old, newElement);
+        final Frame frame = this.frames.get(this.depth - 1);
+        if(old.equals(frame.element))
+        {
+            frame.replaced = true;
+            frame.replacement = newElement;
+        }
+        else
+        {
+            addChild(frame, old, newElement);
+        }
     }
 
     public ImmutableElement element()
     {
         return this.root;
     }
-}
\ No newline at end of file
+}
@@ -20,12 +20,14 @@ import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
 import xml.entity.immutableentity.TestImmutableElements;
+import xml.entity.immutableentity.TestZipper;
 import xml.entity.mutableentity.TestElements;
 import xml.entity.mutableentity.TestMutableEntity;
 import xml.entity.select.TestDelete;
 import xml.entity.select.TestInsert;
 import xml.entity.select.TestPathParser;
 import xml.entity.select.TestSelect;
+import xml.entity.select.TestTransaction;
 import xml.entity.select.TestUpdate;
 import xml.entity.serialize.SerializationSuite;
 import xml.entity.serialize.transform.TransformSuite;
@@ -37,9 +39,11 @@ import xml.entity.serialize.transform.TransformSuite;
                TestInsert.class,
                TestUpdate.class,
                TestDelete.class,
+               TestTransaction.class,
                TestMutableEntity.class,
                TestElements.class,
                TestImmutableElements.class,
+               TestZipper.class,
                TransformSuite.class,
                SerializationSuite.class
 
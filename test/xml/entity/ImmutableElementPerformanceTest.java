@@ -17,11 +17,16 @@ package xml.entity;
 
 import static org.junit.Assert.assertTrue;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import org.junit.Rule;
@@ -32,10 +37,18 @@ import org.slf4j.LoggerFactory;
 
 import xml.entity.immutableelement.ImmutableElement;
 import xml.entity.immutableelement.ImmutableElementFactory;
+import xml.entity.mutableelement.Element;
+import xml.entity.mutableelement.ElementFactory;
 import xml.entity.select.dsl.ExpectedMatches;
+import xml.entity.serilalize.BinaryCodec;
 import xml.entity.serilalize.DefaultServiceContext;
+import xml.entity.serilalize.DocumentStorage;
+import xml.entity.serilalize.MappedDocument;
 import xml.entity.serilalize.Parser;
+import xml.entity.serilalize.ParserEngine;
+import xml.entity.serilalize.RecordHandler;
 import xml.entity.serilalize.Serializer;
+import xml.entity.serilalize.Serializers;
 
 import com.google.common.base.Charsets;
 import com.google.common.collect.ContiguousSet;
@@ -43,6 +56,7 @@ import com.google.common.collect.DiscreteDomain;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableList.Builder;
 import com.google.common.collect.Range;
+import com.google.common.io.ByteStreams;
 
 public class ImmutableElementPerformanceTest
 {
@@ -139,7 +153,7 @@ public class ImmutableElementPerformanceTest
     @Test
     public void parse() throws Exception
     {
-        // increase this range by one and you will run out of MEM
+        // increase this range by one and you will run out of MEM, see stream()
         final Range<Character> range = Range.closed('a', 'j');
         logRange(range);
         final ImmutableElement root = createTree(range);
@@ -161,6 +175,205 @@ public class ImmutableElementPerformanceTest
         this.logger.info("stop parse: {} ms", timer.elapsedIn(TimeUnit.MILLISECONDS));
     }
 
+    @Test
+    public void stream() throws Exception
+    {
+        final Range<Character> range = Range.closed('a', 'j');
+        logRange(range);
+        final ImmutableElement root = createTree(range);
+
+        final File newFile = this.tmpFolder.newFile();
+        final FileOutputStream stream = new FileOutputStream(newFile);
+        this.serializer.serialize(root).toStream(stream, Charsets.UTF_8);
+        stream.close();
+        this.logger.info("File size: {} MB", newFile.length() / (1024 * 1024));
+
+        final int[] records = { 0 };
+        final Timer timer = new Timer();
+        final InputStreamReader reader = new InputStreamReader(new FileInputStream(newFile), Charsets.UTF_8);
+        this.parser.stream(reader, "/root/*/*", new RecordHandler() {
+
+            @Override
+            public void onRecord(final ImmutableElement record)
+            {
+                records[0]++;
+            }
+        });
+        reader.close();
+        this.logger.info("streamed {} records: {} ms", records[0], timer.elapsedIn(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void compareParserEngines() throws Exception
+    {
+        final Range<Character> range = Range.closed('a', 'i');
+        logRange(range);
+        final ImmutableElement root = createTree(range);
+
+        final File newFile = this.tmpFolder.newFile();
+        final FileOutputStream stream = new FileOutputStream(newFile);
+        this.serializer.serialize(root).toStream(stream, Charsets.UTF_8);
+        stream.close();
+        this.logger.info("File size: {} MB", newFile.length() / (1024 * 1024));
+
+        for(final ParserEngine engine : ParserEngine.values())
+        {
+            final Parser engineParser = DefaultServiceContext.create(engine).parser();
+            final Timer timer = new Timer();
+            final InputStreamReader reader = new InputStreamReader(new FileInputStream(newFile), Charsets.UTF_8);
+            engineParser.parse(reader);
+            reader.close();
+            this.logger.info("{} parse: {} ms", engine, timer.elapsedIn(TimeUnit.MILLISECONDS));
+
+            final Timer mappedTimer = new Timer();
+            engineParser.parse(newFile);
+            this.logger.info("{} parse mapped file: {} ms", engine, mappedTimer.elapsedIn(TimeUnit.MILLISECONDS));
+        }
+    }
+
+    @Test
+    public void compareDocumentStorage() throws Exception
+    {
+        final Range<Character> range = Range.closed('a', 'i');
+        logRange(range);
+        final File newFile = this.tmpFolder.newFile();
+        final OutputStream stream = new BufferedOutputStream(new FileOutputStream(newFile));
+        Serializers.utf8().serialize(createTree(range)).toStream(stream, Charsets.UTF_8);
+        stream.close();
+        final String path = createPath(range);
+
+        for(final DocumentStorage storage : DocumentStorage.values())
+        {
+            final long before = usedMemory();
+            final Timer timer = new Timer();
+            final ImmutableElement root = this.parser.withStorage(storage).parse(newFile);
+            this.logger.info("{} parse: {} ms", storage, timer.elapsedIn(TimeUnit.MILLISECONDS));
+            this.logger.info("{} heap: {} MB", storage, (usedMemory() - before) / (1024 * 1024));
+            final Timer selectTimer = new Timer();
+            root.select().from(path).one();
+            this.logger.info("{} select: {} ms", storage, selectTimer.elapsedIn(TimeUnit.MILLISECONDS));
+        }
+    }
+
+    private static long usedMemory()
+    {
+        final Runtime runtime = Runtime.getRuntime();
+        for(int i = 0; i < 3; i++)
+        {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @Test
+    public void compareSerializers() throws Exception
+    {
+        final Range<Character> range = Range.closed('a', 'i');
+        logRange(range);
+        final ImmutableElement root = createTree(range);
+
+        for(final Serializer candidate : ImmutableList.of(Serializers.xmlStreamWriter(), Serializers.utf8()))
+        {
+            final File newFile = this.tmpFolder.newFile();
+            final Timer timer = new Timer();
+            final OutputStream stream = new BufferedOutputStream(new FileOutputStream(newFile));
+            candidate.serialize(root).toStream(stream, Charsets.UTF_8);
+            stream.close();
+            this.logger.info("{} serialize: {} ms", candidate.getClass().getSimpleName(), timer.elapsedIn(TimeUnit.MILLISECONDS));
+        }
+    }
+
+    @Test
+    public void selectInWideDocument()
+    {
+        final ImmutableElement root = createWideTree();
+        final Timer timer = new Timer();
+        for(int i = 0; i < 1000; i++)
+        {
+            root.select().from("/catalog/header/title").one();
+        }
+        this.logger.info("1000 selects in wide document: {} ms", timer.elapsedIn(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void copyOnWriteInWideDocument()
+    {
+        final ImmutableElement root = createWideTree();
+        final Timer timer = new Timer();
+        final Element mutable = ElementFactory.create().createCopyOnWrite(root);
+        final Element header = mutable.children().iterator().next();
+        header.children().iterator().next().value("changed");
+        header.attribute("date").value("today");
+        mutable.attribute("version").value("2");
+        final ImmutableElement edited = mutable.immutableCopy();
+        this.logger.info("copy on write edit in wide document: {} ms", timer.elapsedIn(TimeUnit.MILLISECONDS));
+        assertTrue(edited.children().get(1) == root.children().get(1));
+    }
+
+    @Test
+    public void serializeWideDocument() throws Exception
+    {
+        final ImmutableElement root = createWideTree();
+
+        final ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        for(final Serializer candidate : ImmutableList.of(Serializers.utf8(), Serializers.parallelUtf8(executor)))
+        {
+            final Timer timer = new Timer();
+            candidate.serialize(root).toStream(ByteStreams.nullOutputStream(), Charsets.UTF_8);
+            this.logger.info("{} serialize wide: {} ms", candidate.getClass().getSimpleName(), timer.elapsedIn(TimeUnit.MILLISECONDS));
+        }
+        executor.shutdown();
+    }
+
+    @Test
+    public void compareBinaryCodec() throws Exception
+    {
+        final Range<Character> range = Range.closed('a', 'i');
+        logRange(range);
+        final ImmutableElement root = createTree(range);
+        final BinaryCodec codec = BinaryCodec.create(ImmutableElementFactory.create());
+
+        final File xmlFile = this.tmpFolder.newFile();
+        Timer timer = new Timer();
+        final OutputStream xmlStream = new BufferedOutputStream(new FileOutputStream(xmlFile));
+        Serializers.utf8().serialize(root).toStream(xmlStream, Charsets.UTF_8);
+        xmlStream.close();
+        this.parser.parse(xmlFile);
+        this.logger.info("XML round trip: {} ms, {} bytes", timer.elapsedIn(TimeUnit.MILLISECONDS), xmlFile.length());
+
+        final File binaryFile = this.tmpFolder.newFile();
+        timer = new Timer();
+        final OutputStream binaryStream = new BufferedOutputStream(new FileOutputStream(binaryFile));
+        codec.write(root, binaryStream);
+        binaryStream.close();
+        final InputStream input = new FileInputStream(binaryFile);
+        codec.read(input);
+        input.close();
+        this.logger.info("Binary round trip: {} ms, {} bytes", timer.elapsedIn(TimeUnit.MILLISECONDS), binaryFile.length());
+
+        final String path = createPath(range);
+        timer = new Timer();
+        MappedDocument.open(binaryFile, ImmutableElementFactory.create()).root().select().from(path).one();
+        this.logger.info("Mapped open and select: {} ms", timer.elapsedIn(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void reserializeAfterUpdate() throws Exception
+    {
+        final Range<Character> range = Range.closed('a', 'i');
+        logRange(range);
+        final ImmutableElement root = createTree(range);
+        final ImmutableElement updated = root.update().from(createPath(range)).setAttr("foo", "bar").expect(ExpectedMatches.exactlyOne()).element();
+
+        for(final Serializer candidate : ImmutableList.of(Serializers.utf8(), Serializers.cachingUtf8(256 << 20)))
+        {
+            candidate.serialize(root).toStream(ByteStreams.nullOutputStream(), Charsets.UTF_8);
+            final Timer timer = new Timer();
+            candidate.serialize(updated).toStream(ByteStreams.nullOutputStream(), Charsets.UTF_8);
+            this.logger.info("{} serialize updated: {} ms", candidate.getClass().getSimpleName(), timer.elapsedIn(TimeUnit.MILLISECONDS));
+        }
+    }
+
     private void logRange(final Range<Character> range)
     {
         final int size = size(range);
@@ -215,4 +428,18 @@ public class ImmutableElementPerformanceTest
 
         return factory.createNode("root", children);
     }
+
+    private ImmutableElement createWideTree()
+    {
+        final ImmutableElementFactory factory = ImmutableElementFactory.create();
+        final Builder<ImmutableElement> builder = ImmutableList.builder();
+        builder.add(factory.createNode("header", ImmutableList.of(factory.createNode("title", ImmutableList.of(factory.createText("catalog"))))));
+        for(int i = 0; i < 200000; i++)
+        {
+            builder.add(factory.createNode("item", ImmutableList.of(
+                    factory.createAttr("id", Integer.toString(i)),
+                    factory.createNode("name", ImmutableList.of(factory.createText("item " + i))))));
+        }
+        return factory.createNode("catalog", builder.build());
+    }
 }
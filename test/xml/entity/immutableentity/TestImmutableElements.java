@@ -16,17 +16,23 @@
 package xml.entity.immutableentity;
 
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.sameInstance;
+
+import java.util.Collections;
 
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ErrorCollector;
 
 import xml.entity.immutableelement.ImmutableElement;
+import xml.entity.immutableelement.ImmutableElementFactory;
 import xml.entity.immutableelement.ImmutableElements;
+import xml.entity.immutableelement.NodeKind;
 import xml.entity.mutableelement.Element;
 import xml.entity.mutableelement.ElementFactory;
 
 import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableList;
 
 public class TestImmutableElements
 {
@@ -46,4 +52,127 @@ public class TestImmutableElements
         mismatch.child("Foo");
         collector.checkThat(expr.apply(mismatch.immutableCopy()), equalTo(false));
     }
+
+    @Test
+    public void testNamesAreCanonical()
+    {
+        final ImmutableElementFactory immutableFactory = ImmutableElementFactory.create();
+
+        final ImmutableElement first = immutableFactory.createLeaf(new String("Foo"));
+        final ImmutableElement second = immutableFactory.createLeaf(new String("Foo"));
+        collector.checkThat(first.name(), sameInstance(second.name()));
+
+        final ImmutableElement firstAttr = immutableFactory.createAttr(new String("name"), "a");
+        final ImmutableElement secondAttr = immutableFactory.createAttr(new String("name"), "b");
+        collector.checkThat(firstAttr.name(), equalTo("@name"));
+        collector.checkThat(firstAttr.name(), sameInstance(secondAttr.name()));
+    }
+
+    @Test
+    public void testKind()
+    {
+        final ImmutableElementFactory immutableFactory = ImmutableElementFactory.create();
+
+        final ImmutableElement node = immutableFactory.createLeaf("Foo");
+        final ImmutableElement attr = immutableFactory.createAttr("Foo", "bar");
+        final ImmutableElement text = immutableFactory.createText("bar");
+        collector.checkThat(node.kind(), equalTo(NodeKind.ELEMENT));
+        collector.checkThat(attr.kind(), equalTo(NodeKind.ATTRIBUTE));
+        collector.checkThat(text.kind(), equalTo(NodeKind.TEXT));
+        collector.checkThat(ImmutableElements.isInternal().apply(node), equalTo(true));
+        collector.checkThat(ImmutableElements.isAttribute().apply(attr), equalTo(true));
+        collector.checkThat(ImmutableElements.isText().apply(text), equalTo(true));
+        collector.checkThat(ImmutableElements.isInternal().apply(text), equalTo(false));
+    }
+
+    @Test
+    public void testStructuralEquality()
+    {
+        final ImmutableElement first = createTree("1");
+        final ImmutableElement second = createTree("1");
+        final ImmutableElement changed = createTree("2");
+
+        collector.checkThat(first == second, equalTo(false));
+        collector.checkThat(first.structuralHash(), equalTo(second.structuralHash()));
+        collector.checkThat(ImmutableElements.structurallyEqual(first, second), equalTo(true));
+        collector.checkThat(ImmutableElements.structuralEquivalence().equivalent(first, second), equalTo(true));
+        collector.checkThat(first.structuralHash() == changed.structuralHash(), equalTo(false));
+        collector.checkThat(ImmutableElements.structurallyEqual(first, changed), equalTo(false));
+        // the identity is still used by equals
+        collector.checkThat(first.equals(second), equalTo(false));
+    }
+
+    @Test
+    public void testStructuralEqualityRespectsKindAndOrder()
+    {
+        final ImmutableElementFactory immutableFactory = ImmutableElementFactory.create();
+        final ImmutableElement a = immutableFactory.createAttr("a", "1");
+        final ImmutableElement b = immutableFactory.createAttr("b", "1");
+
+        collector.checkThat(ImmutableElements.structurallyEqual(immutableFactory.createNode("Foo", ImmutableList.of(a, b)),
+                immutableFactory.createNode("Foo", ImmutableList.of(b, a))), equalTo(false));
+        collector.checkThat(ImmutableElements.structurallyEqual(immutableFactory.createText("a"), immutableFactory.createLeaf("a")), equalTo(false));
+    }
+
+    private static ImmutableElement createTree(final String value)
+    {
+        final ImmutableElementFactory immutableFactory = ImmutableElementFactory.create();
+        final ImmutableElement bar = immutableFactory.createNode("Bar",
+                ImmutableList.of(immutableFactory.createAttr("name", value), immutableFactory.createText("text")));
+        return immutableFactory.createNode("Foo", ImmutableList.of(bar, immutableFactory.createLeaf("Baz")));
+    }
+
+    @Test
+    public void testInterningFactorySharesEqualNodes()
+    {
+        final ImmutableElementFactory interning = ImmutableElementFactory.createInterning(1000);
+
+        final ImmutableElement first = interning.createNode("currency", ImmutableList.of(interning.createAttr("code", "EUR")));
+        final ImmutableElement second = interning.createNode("currency", ImmutableList.of(interning.createAttr("code", "EUR")));
+        final ImmutableElement other = interning.createNode("currency", ImmutableList.of(interning.createAttr("code", "USD")));
+        collector.checkThat(first, sameInstance(second));
+        collector.checkThat(first == other, equalTo(false));
+        collector.checkThat(interning.createText("a"), sameInstance(interning.createText("a")));
+        collector.checkThat(interning.createLeaf("a") == interning.createText("a"), equalTo(false));
+
+        // elements with many children are not shared
+        final ImmutableList<ImmutableElement> children = ImmutableList.copyOf(Collections.nCopies(20, first));
+        collector.checkThat(interning.createNode("list", children) == interning.createNode("list", children), equalTo(false));
+
+        final ImmutableElementFactory plain = ImmutableElementFactory.create();
+        collector.checkThat(plain.createText("a") == plain.createText("a"), equalTo(false));
+    }
+
+    @Test
+    public void testUpdateSharedNode()
+    {
+        final ImmutableElementFactory interning = ImmutableElementFactory.createInterning(1000);
+        final ImmutableElement currency = interning.createNode("currency", ImmutableList.of(interning.createAttr("code", "EUR")));
+        final ImmutableElement a = interning.createNode("A", ImmutableList.of(currency, currency));
+        final ImmutableElement b = interning.createNode("B", ImmutableList.of(currency));
+        final ImmutableElement root = interning.createNode("Root", ImmutableList.of(a, b));
+        collector.checkThat(a.children().get(0), sameInstance(b.children().get(0)));
+
+        final ImmutableElement updated = root.update().from("/Root/A/currency").setAttr("code", "USD").element();
+        collector.checkThat(updated.select().from("/Root/A/currency@code=USD").all().size(), equalTo(2));
+        collector.checkThat(updated.select().from("/Root/B/currency@code=EUR").all().size(), equalTo(1));
+        collector.checkThat(updated.child("B"), sameInstance(b));
+    }
+
+    @Test
+    public void testValue()
+    {
+        final ImmutableElementFactory immutableFactory = ImmutableElementFactory.create();
+        final String text = new String("text");
+
+        final ImmutableElement single = immutableFactory.createNode("Foo",
+                ImmutableList.of(immutableFactory.createAttr("a", "1"), immutableFactory.createText(text)));
+        collector.checkThat(single.value(), sameInstance(text));
+        collector.checkThat(single.value(), sameInstance(single.value()));
+
+        final ImmutableElement many = immutableFactory.createNode("Foo",
+                ImmutableList.of(immutableFactory.createText("a"), immutableFactory.createLeaf("Bar"), immutableFactory.createText("b"), immutableFactory.createText("c")));
+        collector.checkThat(many.value(), equalTo("abc"));
+        collector.checkThat(immutableFactory.createLeaf("Foo").value(), equalTo(""));
+    }
 }
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2013 Christof Lemke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xml.entity.immutableentity;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import xml.entity.immutableelement.ImmutableElement;
+import xml.entity.immutableelement.ImmutableElementFactory;
+import xml.entity.immutableelement.Zipper;
+
+import com.google.common.collect.ImmutableList;
+
+public class TestZipper
+{
+    private final ImmutableElementFactory factory = ImmutableElementFactory.create();
+    private ImmutableElement root;
+
+    @Before
+    public void setUp()
+    {
+        final ImmutableElement bar = this.factory.createNode("Bar", ImmutableList.of(this.factory.createAttr("name", "x")));
+        final ImmutableElement baz = this.factory.createNode("Baz", ImmutableList.of(this.factory.createLeaf("Qux")));
+        this.root = this.factory.createNode("Foo", ImmutableList.of(bar, baz, this.factory.createLeaf("Other")));
+    }
+
+    @Test
+    public void testNavigate()
+    {
+        final Zipper zipper = Zipper.create(this.root, this.factory);
+        assertThat(zipper.isRoot(), equalTo(true));
+        assertThat(zipper.down().node().name(), equalTo("Bar"));
+        assertThat(zipper.down().right().node().name(), equalTo("Baz"));
+        assertThat(zipper.down("Other").left().down().node().name(), equalTo("Qux"));
+        assertThat(zipper.down(1).down().up().up().node(), sameInstance(this.root));
+        assertThat(zipper.down("Other").hasRight(), equalTo(false));
+    }
+
+    @Test
+    public void testReplaceRebuildsOnlyTheSpine()
+    {
+        final ImmutableElement replacement = this.factory.createLeaf("New");
+        final ImmutableElement edited = Zipper.create(this.root, this.factory).down("Baz").down().replace(replacement).root();
+
+        assertThat(edited.child("Baz").child("New"), sameInstance(replacement));
+        assertThat(edited.child("Bar"), sameInstance(this.root.child("Bar")));
+        assertThat(edited.child("Other"), sameInstance(this.root.child("Other")));
+        assertThat(this.root.child("Baz").child("Qux").name(), equalTo("Qux"));
+    }
+
+    @Test
+    public void testEditSiblings()
+    {
+        final ImmutableElement first = this.factory.createLeaf("First");
+        final ImmutableElement last = this.factory.createLeaf("Last");
+        final ImmutableElement edited = Zipper.create(this.root, this.factory)
+                .down("Bar").insertLeft(first)
+                .right().replace(this.factory.createLeaf("Replaced"))
+                .right().insertRight(last)
+                .root();
+
+        assertThat(names(edited), equalTo(ImmutableList.of("First", "Bar", "Replaced", "Other", "Last")));
+    }
+
+    @Test
+    public void testRemove()
+    {
+        final Zipper parent = Zipper.create(this.root, this.factory).down("Baz").remove();
+
+        assertThat(parent.isRoot(), equalTo(true));
+        assertThat(names(parent.root()), equalTo(ImmutableList.of("Bar", "Other")));
+    }
+
+    @Test
+    public void testUnchangedTreeIsShared()
+    {
+        assertThat(Zipper.create(this.root, this.factory).down().right().down().root(), sameInstance(this.root));
+    }
+
+    @Test
+    public void testEditEveryChild()
+    {
+        final ImmutableList.Builder<ImmutableElement> children = ImmutableList.builder();
+        for(int i = 0; i < 1000; i++)
+        {
+            children.add(this.factory.createLeaf("C" + i));
+        }
+        final ImmutableElement wide = this.factory.createNode("Wide", children.build());
+
+        Zipper zipper = Zipper.create(wide, this.factory).down();
+        while(true)
+        {
+            zipper = zipper.replace(this.factory.createLeaf("E" + zipper.index()));
+            if(!zipper.hasRight())
+            {
+                break;
+            }
+            zipper = zipper.right();
+        }
+        final ImmutableElement edited = zipper.left().left().insertLeft(this.factory.createLeaf("Inserted")).root();
+
+        assertThat(edited.children().size(), equalTo(1001));
+        assertThat(edited.children().get(0).name(), equalTo("E0"));
+        assertThat(edited.children().get(997).name(), equalTo("Inserted"));
+        assertThat(edited.children().get(998).name(), equalTo("E997"));
+        assertThat(edited.children().get(1000).name(), equalTo("E999"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testNoParentAtRoot()
+    {
+        Zipper.create(this.root, this.factory).up();
+    }
+
+    private static ImmutableList<String> names(final ImmutableElement element)
+    {
+        final ImmutableList.Builder<String> names = ImmutableList.builder();
+        for(final ImmutableElement child : element.children())
+        {
+            names.add(child.name());
+        }
+        return names.build();
+    }
+}
@@ -15,7 +15,9 @@
  */
 package xml.entity.mutableentity;
 
+import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static xml.entity.mutableentity.MutableMatchers.hasChild;
 import static xml.entity.mutableentity.MutableMatchers.isLeaf;
 import static xml.entity.mutableentity.MutableMatchers.isMissing;
@@ -27,8 +29,18 @@ import org.junit.Test;
 import org.junit.rules.ErrorCollector;
 import org.junit.rules.ExpectedException;
 
+import xml.entity.immutableelement.ImmutableElement;
+import xml.entity.immutableelement.ImmutableElementFactory;
+import xml.entity.immutableelement.ImmutableElements;
 import xml.entity.mutableelement.Element;
 import xml.entity.mutableelement.ElementFactory;
+import xml.entity.serilalize.DefaultServiceContext;
+import xml.entity.serilalize.DocumentStorage;
+import xml.entity.serilalize.ServiceContext;
+import xml.entity.serilalize.WhitespacePolicy;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
 
 public class TestMutableEntity
 {
@@ -257,4 +269,243 @@ public class TestMutableEntity
         thrown.expect(IllegalStateException.class);
         node.attribute("adsda");
     }
+
+    @Test
+    public void testFreezeTransient()
+    {
+        final Element root = factory.createTransient("Foo");
+        root.attribute("a").value("1");
+        root.child("Bar").value("text");
+        root.child("Baz").child("Qux");
+
+        final ImmutableElement frozen = root.freeze();
+        collector.checkThat(ImmutableElements.structurallyEqual(frozen, root.immutableCopy()), equalTo(true));
+        collector.checkThat(frozen.child("Bar").value(), equalTo("text"));
+        collector.checkThat(frozen.child("Bar"), sameInstance(frozen.children().get(1)));
+        collector.checkThat(frozen.select().from("/Foo/Baz/Qux").all().size(), equalTo(1));
+        final ImmutableElement updated = frozen.update().from("/Foo/Bar").setText("changed").element();
+        collector.checkThat(updated.child("Bar").value(), equalTo("changed"));
+        collector.checkThat(frozen.child("Bar").value(), equalTo("text"));
+    }
+
+    @Test
+    public void testFrozenTreeRejectsChanges()
+    {
+        final Element root = factory.createTransient("Foo");
+        final Element child = root.child("Bar");
+        root.freeze();
+
+        thrown.expect(IllegalStateException.class);
+        child.attribute("a");
+    }
+
+    @Test
+    public void testFreezeCopiesAddedNodes()
+    {
+        final Element root = factory.createTransient("Foo");
+        final Element bar = factory.createNode("Bar");
+        bar.attribute("a").value("1");
+        root.children().add(bar);
+        final ImmutableElement frozen = root.freeze();
+
+        bar.value("mutated");
+        collector.checkThat(frozen.child("Bar").value(), equalTo(""));
+        collector.checkThat(frozen.child("Bar").child("@a").value(), equalTo("1"));
+    }
+
+    @Test
+    public void testAddNodeWithoutValueToTransientTree()
+    {
+        final Element root = factory.createTransient("Foo");
+        final Element bar = factory.createNode("Bar");
+        bar.attribute("a");
+        root.children().add(bar);
+
+        final ImmutableElement frozen = root.freeze();
+        collector.checkThat(frozen.child("Bar").child("@a").value(), equalTo(""));
+    }
+
+    @Test
+    public void testTransientTreeHasNoNullValues()
+    {
+        final Element root = factory.createTransient("Foo");
+        root.attribute("a");
+        final ImmutableElement frozen = root.freeze();
+        collector.checkThat(frozen.child("@a").value(), equalTo(""));
+        collector.checkThat(frozen.structuralHash(), equalTo(ImmutableElements.computeStructuralHash(frozen)));
+
+        thrown.expect(NullPointerException.class);
+        factory.createTransient("Foo").attribute("a").value(null);
+    }
+
+    @Test
+    public void testFreezeCopiesOtherElements()
+    {
+        final Element root = factory.createNode("Foo");
+        root.child("Bar");
+        final ImmutableElement frozen = root.freeze();
+
+        root.child("Baz");
+        collector.checkThat(frozen.children().size(), equalTo(1));
+    }
+
+    @Test
+    public void testAttributeIsReused()
+    {
+        final Element root = factory.createNode("Foo");
+        for(int i = 0; i < 1000; i++)
+        {
+            root.attribute("a" + i).value(String.valueOf(i));
+        }
+        final Element attr = root.attribute("a500");
+        collector.checkThat(attr.value(), equalTo("500"));
+        collector.checkThat(root.attribute("a500") == attr, equalTo(true));
+        collector.checkThat(root.children().size(), equalTo(1000));
+    }
+
+    @Test
+    public void testChildrenOrder()
+    {
+        final Element root = factory.createNode("Foo");
+        root.value("text");
+        root.child("Bar");
+        root.children().add(factory.createAttr("a", "1"));
+        root.value("changed");
+
+        final ImmutableElement copy = root.immutableCopy();
+        collector.checkThat(copy.children().size(), equalTo(3));
+        collector.checkThat(copy.children().get(0).name(), equalTo("Bar"));
+        collector.checkThat(copy.children().get(1).name(), equalTo("@a"));
+        collector.checkThat(copy.children().get(2).value(), equalTo("changed"));
+    }
+
+    @Test
+    public void testInterleavedText()
+    {
+        final Element root = factory.createNode("p");
+        final Element hello = factory.createText("Hello ");
+        root.children().add(hello);
+        final Element b = root.child("b").value("x");
+        root.children().add(factory.createText(" world"));
+        collector.checkThat(root, valueIs("Hello  world"));
+        collector.checkThat(names(root.immutableCopy()), equalTo(ImmutableList.of("#text", "b", "#text")));
+
+        root.children().remove(hello);
+        root.value("!");
+        collector.checkThat(names(root.immutableCopy()), equalTo(ImmutableList.of("b", "#text")));
+        root.children().remove(b);
+        collector.checkThat(root, valueIs("!"));
+        root.value("?");
+        collector.checkThat(root, valueIs("?"));
+        collector.checkThat(root.children().size(), equalTo(1));
+    }
+
+    private static ImmutableList<String> names(final ImmutableElement element)
+    {
+        final ImmutableList.Builder<String> names = ImmutableList.builder();
+        for(final ImmutableElement child : element.children())
+        {
+            names.add(child.name());
+        }
+        return names.build();
+    }
+
+    @Test
+    public void testRemoveChildren()
+    {
+        final Element root = factory.createNode("Foo");
+        root.attribute("a").value("1");
+        root.child("Bar");
+        root.value("text");
+
+        root.children().remove(root.attribute("a"));
+        collector.checkThat(root, not(hasChild(nameIs("@a"))));
+        collector.checkThat(root.children().size(), equalTo(2));
+        root.children().clear();
+        collector.checkThat(root, valueIs(null));
+        collector.checkThat(root, isLeaf());
+    }
+
+    private ImmutableElement createImmutableTree()
+    {
+        final ImmutableElementFactory immutable = ImmutableElementFactory.create();
+        final ImmutableElement bar = immutable.createNode("Bar", ImmutableList.of(immutable.createAttr("a", "1"), immutable.createText("bar")));
+        final ImmutableElement baz = immutable.createNode("Baz", ImmutableList.of(immutable.createNode("Qux", ImmutableList.<ImmutableElement> of())));
+        return immutable.createNode("Foo", ImmutableList.of(bar, baz));
+    }
+
+    @Test
+    public void testCopyOnWriteUnchanged()
+    {
+        final ImmutableElement tree = createImmutableTree();
+        final Element root = factory.createCopyOnWrite(tree);
+        collector.checkThat(root.children().size(), equalTo(2));
+        collector.checkThat(root, hasChild(nameIs("Baz")));
+        collector.checkThat(root.immutableCopy() == tree, equalTo(true));
+    }
+
+    @Test
+    public void testCopyOnWriteSharesUntouchedSubtrees()
+    {
+        final ImmutableElement tree = createImmutableTree();
+        final Element root = factory.createCopyOnWrite(tree);
+        final Element bar = root.children().iterator().next();
+        collector.checkThat(bar, valueIs("bar"));
+        bar.attribute("a").value("2");
+
+        final ImmutableElement copy = root.immutableCopy();
+        collector.checkThat(copy.child("Bar").child("@a").value(), equalTo("2"));
+        collector.checkThat(copy.child("Bar").value(), equalTo("bar"));
+        collector.checkThat(copy.child("Baz") == tree.child("Baz"), equalTo(true));
+        collector.checkThat(copy.child("Bar").children().get(1) == tree.child("Bar").children().get(1), equalTo(true));
+        collector.checkThat(tree.child("Bar").child("@a").value(), equalTo("1"));
+    }
+
+    @Test
+    public void testCopyOnWriteAddChildren()
+    {
+        final ImmutableElement tree = createImmutableTree();
+        final Element root = factory.createCopyOnWrite(tree);
+        root.child("New").value("text");
+        root.attribute("b").value("3");
+
+        final ImmutableElement copy = root.immutableCopy();
+        collector.checkThat(copy.children().size(), equalTo(4));
+        collector.checkThat(copy.child("@b").value(), equalTo("3"));
+        collector.checkThat(copy.child("New").value(), equalTo("text"));
+        collector.checkThat(copy.child("Bar") == tree.child("Bar"), equalTo(true));
+        collector.checkThat(tree.children().size(), equalTo(2));
+        collector.checkThat(ImmutableElements.structurallyEqual(root.copy().immutableCopy(), copy), equalTo(true));
+    }
+
+    @Test
+    public void testCopyOnWriteOverPackedDocument()
+    {
+        final ImmutableElement tree = DefaultServiceContext.create().parser()
+                .withStorage(DocumentStorage.PACKED)
+                .parse("<Foo a=\"1\"><Bar>x</Bar><Baz/></Foo>");
+        final Element root = factory.createCopyOnWrite(tree);
+        Iterables.get(root.children(), 1).children().size();
+        collector.checkThat(root.immutableCopy(), sameInstance(tree));
+
+        Iterables.get(root.children(), 2).value("y");
+        final ImmutableElement copy = root.immutableCopy();
+        collector.checkThat(copy.child("Baz").value(), equalTo("y"));
+        collector.checkThat(copy.child("Bar"), equalTo(tree.child("Bar")));
+    }
+
+    @Test
+    public void testCopyOnWriteKeepsMixedContent()
+    {
+        final ServiceContext context = DefaultServiceContext.create();
+        final ImmutableElement tree = context.parser()
+                .withWhitespacePolicy(WhitespacePolicy.PRESERVE)
+                .parse("<p id=\"1\">Hello <b>x</b> world</p>");
+        final Element root = factory.createCopyOnWrite(tree);
+        collector.checkThat(root.children().size(), equalTo(4));
+        collector.checkThat(root.immutableCopy(), sameInstance(tree));
+
+        Iterables.get(root.children(), 2).value("y");
+        collector.checkThat(context.serializer().serialize(root.immutableCopy()).toString(), equalTo("<p id=\"1\">Hello <b>y</b> world</p>"));
+    }
 }
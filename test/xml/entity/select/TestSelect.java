@@ -34,6 +34,8 @@ import org.junit.rules.ExpectedException;
 
 import xml.entity.CommonData;
 import xml.entity.immutableelement.ImmutableElement;
+import xml.entity.immutableelement.ImmutableElementFactory;
+import xml.entity.immutableelement.ImmutableElements;
 import xml.entity.immutableelement.ImmutableMatchers;
 import xml.entity.serilalize.DefaultServiceContext;
 import xml.entity.serilalize.Parser;
@@ -148,4 +150,30 @@ public class TestSelect
     {
 
     }
+
+    @Test
+    public void testSelectInWideNode()
+    {
+        final ImmutableElementFactory factory = ImmutableElementFactory.create();
+        final ImmutableList.Builder<ImmutableElement> children = ImmutableList.builder();
+        for(int i = 0; i < 100; i++)
+        {
+            children.add(factory.createNode(i % 2 == 0 ? "Bar" : "Baz", ImmutableList.of(
+                    factory.createAttr("i", Integer.toString(i)),
+                    factory.createNode("Qux", ImmutableList.of(factory.createText(Integer.toString(i)))))));
+        }
+        children.add(factory.createNode("Single", ImmutableList.<ImmutableElement> of()));
+        final ImmutableElement element = factory.createNode("Foo", children.build());
+
+        this.errorCollector.checkThat(element.select().from("/Foo/Bar").all().size(), is(50));
+        this.errorCollector.checkThat(element.select().from("/Foo/*").all().size(), is(101));
+        this.errorCollector.checkThat(element.select().from("/Foo/Baz@i=51/Qux").one(), valueIs("51"));
+        this.errorCollector.checkThat(element.select().from("/Foo/Bar/Qux#text=42").all().size(), is(1));
+        this.errorCollector.checkThat(element.select().from("/Foo/Bar@i=51").all().size(), is(0));
+        this.errorCollector.checkThat(element.child("Single"), nameIs("Single"));
+        this.errorCollector.checkThat(element.children("Baz").get(1).children("@i").get(0), valueIs("3"));
+        this.errorCollector.checkThat(element.children("Missing").isEmpty(), is(true));
+        this.errorCollector.checkThat(ImmutableElements.hasChild(ImmutableElements.attr("i").value("4")).apply(element.children("Bar").get(2)), is(true));
+        this.errorCollector.checkThat(ImmutableElements.hasChild(ImmutableElements.attr("i")).apply(element.child("Single")), is(false));
+    }
 }
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2013 Christof Lemke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xml.entity.select;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static xml.entity.immutableelement.ImmutableMatchers.hasAttr;
+import static xml.entity.immutableelement.ImmutableMatchers.hasChild;
+import static xml.entity.immutableelement.ImmutableMatchers.nameIs;
+import static xml.entity.select.dsl.ExpectedMatches.exactlyOne;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import xml.entity.immutableelement.ImmutableElement;
+import xml.entity.mutableelement.Element;
+import xml.entity.mutableelement.ElementFactory;
+import xml.entity.select.dsl.DSLException;
+
+public class TestTransaction
+{
+    private final ElementFactory factory = ElementFactory.create();
+    private ImmutableElement element;
+
+    @Before
+    public void setUp()
+    {
+        final Element root = this.factory.createNode("Foo");
+        root.child("Bar").attribute("name").value("x");
+        root.child("Baz").child("Qux");
+        root.child("Other");
+        this.element = root.immutableCopy();
+    }
+
+    @Test
+    public void testStatementsOnDifferentPaths()
+    {
+        final ImmutableElement updated = this.element.transaction()
+                .with(this.element.update().from("/Foo/Bar").setAttr("name", "y"))
+                .with(this.element.delete().from("/Foo/Baz/Qux"))
+                .with(this.element.insert().into("/Foo/Baz").values(this.element.child("Bar")))
+                .element();
+
+        assertThat(updated.child("Bar"), hasAttr("name").withValue("y"));
+        assertThat(updated.child("Baz"), not(hasChild(nameIs("Qux"))));
+        assertThat(updated.child("Baz").child("Bar"), sameInstance(this.element.child("Bar")));
+        assertThat(updated.child("Other"), sameInstance(this.element.child("Other")));
+    }
+
+    @Test
+    public void testStatementsOnTheSameNodeAreAppliedInOrder()
+    {
+        final ImmutableElement updated = this.element.transaction()
+                .with(this.element.update().from("/Foo/Bar").setAttr("name", "y"))
+                .with(this.element.update().from("/Foo/Bar").setAttr("name", "z").setText("text"))
+                .element();
+
+        assertThat(updated.child("Bar"), hasAttr("name").withValue("z"));
+        assertThat(updated.child("Bar").value(), equalTo("text"));
+    }
+
+    @Test
+    public void testStatementsSelectFromTheOriginalElement()
+    {
+        final ImmutableElement updated = this.element.transaction()
+                .with(this.element.update().from("/Foo/Bar").setAttr("name", "y"))
+                .with(this.element.delete().from("/Foo/Bar@name=x"))
+                .element();
+
+        assertThat(updated, not(hasChild(nameIs("Bar"))));
+    }
+
+    @Test
+    public void testEmptyTransaction()
+    {
+        assertThat(this.element.transaction().element(), sameInstance(this.element));
+    }
+
+    @Test(expected = DSLException.class)
+    public void testExpectedMatchesOfEachStatement()
+    {
+        this.element.transaction()
+                .with(this.element.update().from("/Foo/Bar").setAttr("name", "y").expect(exactlyOne()))
+                .with(this.element.delete().from("/Foo/Missing").expect(exactlyOne()))
+                .element();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testStatementOfAnotherElement()
+    {
+        final ImmutableElement other = this.factory.createNode("Foo").immutableCopy();
+        this.element.transaction().with(other.delete().from("/Foo"));
+    }
+}
@@ -175,4 +175,18 @@ public class TestUpdate
                 .expect(ExpectedMatches.exactlyOne())
                 .where(hasChild(attr("name"))).element();
     }
+
+    @Test
+    public void testUnchangedSubtreesAreShared()
+    {
+        final Element root = factory.createNode("Foo");
+        root.child("Bar").attribute("name").value("x");
+        root.child("Baz").child("Qux").value("text");
+        final ImmutableElement element = root.immutableCopy();
+
+        final ImmutableElement updated = element.update().from("/Foo/Bar").setAttr("name", "y").expect(exactlyOne()).element();
+
+        assertThat(updated.child("Bar"), hasAttr("name").withValue("y"));
+        assertThat(updated.child("Baz") == element.child("Baz"), equalTo(true));
+    }
 }
@@ -7,6 +7,9 @@ import org.junit.runners.Suite.SuiteClasses;
 @RunWith(Suite.class)
 @SuiteClasses({
                IdentityTest.class,
+               TestBinaryCodec.class,
+               TestDocumentStorage.class,
+               TestMappedDocument.class,
                TestParser.class,
                TestSerializer.class,
                TestXsiContext.class
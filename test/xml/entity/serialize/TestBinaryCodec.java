@@ -0,0 +1,143 @@
+/*
+ * Copyright 2013 Christof Lemke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xml.entity.serialize;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import xml.entity.CommonData;
+import xml.entity.immutableelement.ImmutableElement;
+import xml.entity.immutableelement.ImmutableElementFactory;
+import xml.entity.serilalize.BinaryCodec;
+import xml.entity.serilalize.DefaultServiceContext;
+import xml.entity.serilalize.ServiceContext;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+
+public class TestBinaryCodec
+{
+    private final ServiceContext context = DefaultServiceContext.create();
+    private final ImmutableElementFactory factory = this.context.factory();
+    private final BinaryCodec codec = BinaryCodec.create(this.factory);
+
+    @Test
+    public void roundTrip() throws Exception
+    {
+        final ImmutableElement element = this.context.parser().parse(CommonData.xmlWithMultipleElementsWithSameName.getInput());
+        assertRoundTrip(element);
+    }
+
+    @Test
+    public void roundTripAttributesAndText() throws Exception
+    {
+        final ImmutableElement element = this.context.parser().parse(CommonData.withAttrAndText.getInput());
+        assertRoundTrip(element);
+    }
+
+    @Test
+    public void roundTripNonAscii()
+    {
+        final String value = "\u00e4\u00df\u20ac\ud83d\ude00";
+        final ImmutableElement element = this.factory.createNode("\u00e4", ImmutableList.of(
+                this.factory.createAttr("\u20ac", value),
+                this.factory.createText(value),
+                this.factory.createNode("b", ImmutableList.of(this.factory.createText("")))));
+        assertRoundTrip(element);
+    }
+
+    @Test
+    public void roundTripStream() throws Exception
+    {
+        final ImmutableElement element = largeElement();
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        this.codec.write(element, stream);
+        final ImmutableElement read = this.codec.read(new ByteArrayInputStream(stream.toByteArray()));
+        assertThat(serialize(read), is(serialize(element)));
+    }
+
+    @Test
+    public void smallerThanXml()
+    {
+        final ImmutableElement element = largeElement();
+        final byte[] bytes = this.codec.toByteArray(element);
+        assertTrue(bytes.length < serialize(element).length() * 2 / 3);
+    }
+
+    @Test
+    public void namesAreCanonical()
+    {
+        final ImmutableElement element = this.codec.read(this.codec.toByteArray(largeElement()));
+        assertTrue(element.children().get(0).name() == element.children().get(1).name());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsOtherData()
+    {
+        this.codec.read("<Foo/>".getBytes());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTruncatedDocument()
+    {
+        final byte[] bytes = this.codec.toByteArray(largeElement());
+        this.codec.read(Arrays.copyOf(bytes, bytes.length - 10));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsCountLargerThanDocument()
+    {
+        final byte[] bytes = this.codec.toByteArray(largeElement());
+        // the name count follows the magic number and the version
+        final byte[] corrupt = Arrays.copyOf(bytes, 9);
+        corrupt[4] = (byte) 0xFF;
+        corrupt[5] = (byte) 0xFF;
+        corrupt[6] = (byte) 0xFF;
+        corrupt[7] = (byte) 0xFF;
+        corrupt[8] = (byte) 0x07;
+        this.codec.read(corrupt);
+    }
+
+    private void assertRoundTrip(final ImmutableElement element)
+    {
+        final ImmutableElement read = this.codec.read(this.codec.toByteArray(element));
+        assertThat(serialize(read), is(serialize(element)));
+    }
+
+    private String serialize(final ImmutableElement element)
+    {
+        return this.context.serializer().serialize(element).toString();
+    }
+
+    private ImmutableElement largeElement()
+    {
+        final ImmutableList.Builder<ImmutableElement> children = ImmutableList.builder();
+        for(int i = 0; i < 1000; i++)
+        {
+            children.add(this.factory.createNode("Bar", ImmutableList.of(
+                    this.factory.createAttr("index", Integer.toString(i)),
+                    this.factory.createNode("Baz", ImmutableList.of(this.factory.createText(Strings.repeat("x", i % 10)))))));
+        }
+        return this.factory.createNode("Foo", children.build());
+    }
+}
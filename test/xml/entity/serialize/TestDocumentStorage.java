@@ -0,0 +1,144 @@
+/*
+ * Copyright 2013 Christof Lemke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xml.entity.serialize;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import xml.entity.immutableelement.ImmutableElement;
+import xml.entity.immutableelement.ImmutableElements;
+import xml.entity.immutableelement.NodeKind;
+import xml.entity.select.dsl.ExpectedMatches;
+import xml.entity.serilalize.DefaultServiceContext;
+import xml.entity.serilalize.DocumentStorage;
+import xml.entity.serilalize.ServiceContext;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+@RunWith(Parameterized.class)
+public class TestDocumentStorage
+{
+    private static final String DOCUMENT = "<Foo a=\"1\"><Bar name=\"x\">\u00e4\u20ac\ud83d\ude00</Bar><Bar name=\"y\"><Baz/>text</Bar><Qux>1<Baz/>2</Qux></Foo>";
+
+    @Parameters
+    public static Collection<Object[]> parameters()
+    {
+        final List<Object[]> parameters = Lists.newArrayList();
+        for(final DocumentStorage storage : DocumentStorage.values())
+        {
+            parameters.add(new Object[] { storage });
+        }
+        return parameters;
+    }
+
+    private final ServiceContext context = DefaultServiceContext.create();
+    private final DocumentStorage storage;
+    private ImmutableElement element;
+    private ImmutableElement stored;
+
+    public TestDocumentStorage(final DocumentStorage storage)
+    {
+        this.storage = storage;
+    }
+
+    @Before
+    public void setUp()
+    {
+        this.element = this.context.parser().parse(DOCUMENT);
+        this.stored = this.context.parser().withStorage(this.storage).parse(DOCUMENT);
+    }
+
+    @Test
+    public void sameDocument()
+    {
+        assertThat(serialize(this.stored), is(serialize(this.element)));
+        assertThat(ImmutableElements.structurallyEqual(this.stored, this.element), is(true));
+    }
+
+    @Test
+    public void structuralHash()
+    {
+        final long hash = this.stored.children().get(2).structuralHash();
+        assertThat(hash, is(this.element.children().get(2).structuralHash()));
+        assertThat(this.stored.children().get(2).structuralHash(), is(hash));
+        assertThat(this.stored.structuralHash(), is(this.element.structuralHash()));
+    }
+
+    @Test
+    public void namesAndValues()
+    {
+        assertThat(this.stored.name(), is("Foo"));
+        assertThat(this.stored.kind(), is(NodeKind.ELEMENT));
+        assertThat(this.stored.children().size(), is(4));
+        assertThat(this.stored.children().get(0).name(), is("@a"));
+        assertThat(this.stored.children().get(0).kind(), is(NodeKind.ATTRIBUTE));
+        assertThat(this.stored.children().get(0).value(), is("1"));
+        assertThat(this.stored.children().get(1).value(), is("\u00e4\u20ac\ud83d\ude00"));
+        assertThat(this.stored.child("Qux").value(), is("12"));
+        assertThat(this.stored.children("Missing").isEmpty(), is(true));
+    }
+
+    @Test
+    public void select()
+    {
+        final ImmutableList<ImmutableElement> all = this.stored.select().from("/Foo/Bar").all();
+        assertThat(all.size(), is(2));
+        assertThat(this.stored.select().from("/Foo/Bar@name=y/Baz").one().name(), is("Baz"));
+        assertThat(this.stored.select().from("/Foo@a=1/Qux").one().value(), is("12"));
+    }
+
+    @Test
+    public void update()
+    {
+        final ImmutableElement updated = this.stored.update().from("/Foo/Bar@name=y").setAttr("name", "z").expect(ExpectedMatches.exactlyOne()).element();
+        final ImmutableElement expected = this.element.update().from("/Foo/Bar@name=y").setAttr("name", "z").expect(ExpectedMatches.exactlyOne()).element();
+        assertThat(serialize(updated), is(serialize(expected)));
+        assertThat(updated.children().get(1), is(this.stored.children().get(1)));
+    }
+
+    @Test
+    public void largeDocument()
+    {
+        final StringBuilder document = new StringBuilder("<list>");
+        for(int i = 0; i < 70000; i++)
+        {
+            document.append("<i>").append(i).append("</i>");
+        }
+        final String longValue = Strings.repeat("x", (1 << 20) + 1);
+        document.append("<long>").append(longValue).append("</long></list>");
+
+        final ImmutableElement list = this.context.parser().withStorage(this.storage).parse(document.toString());
+        assertThat(list.children().size(), is(70001));
+        assertThat(list.children().get(69999).value(), is("69999"));
+        assertThat(list.child("long").value(), is(longValue));
+    }
+
+    private String serialize(final ImmutableElement element)
+    {
+        return this.context.serializer().serialize(element).toString();
+    }
+}
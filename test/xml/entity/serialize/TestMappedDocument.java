@@ -0,0 +1,133 @@
+/*
+ * Copyright 2013 Christof Lemke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xml.entity.serialize;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import xml.entity.immutableelement.ImmutableElement;
+import xml.entity.immutableelement.ImmutableElementFactory;
+import xml.entity.immutableelement.ImmutableElements;
+import xml.entity.select.dsl.ExpectedMatches;
+import xml.entity.serilalize.BinaryCodec;
+import xml.entity.serilalize.DefaultServiceContext;
+import xml.entity.serilalize.MappedDocument;
+import xml.entity.serilalize.ServiceContext;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+
+public class TestMappedDocument
+{
+    public @Rule TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    private final ServiceContext context = DefaultServiceContext.create();
+    private final ImmutableElementFactory factory = this.context.factory();
+    private ImmutableElement element;
+    private ImmutableElement mapped;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        this.element = this.context.parser().parse(
+                "<Foo a=\"1\"><Bar name=\"x\">\u00e4\u20ac\ud83d\ude00</Bar><Bar name=\"y\"><Baz/>text</Bar><Qux>1<Baz/>2</Qux></Foo>");
+        final File file = this.tmpFolder.newFile();
+        final FileOutputStream stream = new FileOutputStream(file);
+        BinaryCodec.create(this.factory).write(this.element, stream);
+        stream.close();
+        this.mapped = MappedDocument.open(file, this.factory).root();
+    }
+
+    @Test
+    public void sameDocument()
+    {
+        assertThat(serialize(this.mapped), is(serialize(this.element)));
+    }
+
+    @Test
+    public void namesAndValues()
+    {
+        assertThat(this.mapped.name(), is("Foo"));
+        assertThat(this.mapped.children().size(), is(4));
+        assertThat(this.mapped.children().get(0).name(), is("@a"));
+        assertThat(this.mapped.children().get(0).value(), is("1"));
+        assertThat(this.mapped.children().get(1).value(), is("\u00e4\u20ac\ud83d\ude00"));
+        assertThat(this.mapped.child("Qux").value(), is("12"));
+    }
+
+    @Test
+    public void nodesAreEqualByPosition()
+    {
+        assertThat(this.mapped.children().get(1), is(this.mapped.children().get(1)));
+        assertThat(this.mapped.children().get(1).equals(this.mapped.children().get(2)), is(false));
+    }
+
+    @Test
+    public void structurallyEqualToParsedDocument()
+    {
+        assertThat(this.mapped.structuralHash(), is(this.element.structuralHash()));
+        assertThat(ImmutableElements.structurallyEqual(this.mapped, this.element), is(true));
+    }
+
+    @Test
+    public void select()
+    {
+        final ImmutableList<ImmutableElement> all = this.mapped.select().from("/Foo/Bar").all();
+        assertThat(all.size(), is(2));
+        assertThat(this.mapped.select().from("/Foo/Bar@name=y/Baz").one().name(), is("Baz"));
+    }
+
+    @Test
+    public void update()
+    {
+        final ImmutableElement updated = this.mapped.update().from("/Foo/Bar@name=y").setAttr("name", "z").expect(ExpectedMatches.exactlyOne()).element();
+        final ImmutableElement expected = this.element.update().from("/Foo/Bar@name=y").setAttr("name", "z").expect(ExpectedMatches.exactlyOne()).element();
+        assertThat(serialize(updated), is(serialize(expected)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsOtherFiles() throws Exception
+    {
+        final File file = this.tmpFolder.newFile();
+        Files.write("<Foo/>", file, Charsets.UTF_8);
+        MappedDocument.open(file, this.factory);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownName() throws Exception
+    {
+        final byte[] bytes = BinaryCodec.create(this.factory).toByteArray(this.factory.createNode("Foo", ImmutableList.<ImmutableElement> of()));
+        // magic, version, one name of three bytes, the tag of the root, its name
+        bytes[10] = 5;
+        final File file = this.tmpFolder.newFile();
+        Files.write(bytes, file);
+        MappedDocument.open(file, this.factory).root();
+    }
+
+    private String serialize(final ImmutableElement element)
+    {
+        return this.context.serializer().serialize(element).toString();
+    }
+}
@@ -25,21 +25,67 @@ import static xml.entity.immutableelement.ImmutableMatchers.hasChild;
 import static xml.entity.immutableelement.ImmutableMatchers.nameIs;
 import static xml.entity.immutableelement.ImmutableMatchers.valueIs;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.StringReader;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
+import java.nio.ByteBuffer;
+import java.util.List;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
 
 import xml.entity.CommonData;
 import xml.entity.immutableelement.ImmutableElement;
+import xml.entity.immutableelement.ImmutableElementFactory;
 import xml.entity.serilalize.DefaultServiceContext;
 import xml.entity.serilalize.Parser;
+import xml.entity.serilalize.ParserEngine;
+import xml.entity.serilalize.RecordHandler;
+import xml.entity.serilalize.WhitespacePolicy;
 
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+
+@RunWith(Parameterized.class)
 public class TestParser
 {
-    private final Parser parser = DefaultServiceContext.create().parser();
+    @Parameters
+    public static Collection<Object[]> parameters()
+    {
+        return Arrays.asList(
+                new Object[][] {
+                                { ParserEngine.SAX },
+                                { ParserEngine.STAX }
+                });
+    }
+
+    public @Rule TemporaryFolder tmpFolder = new TemporaryFolder();
+    private final Parser parser;
+    private final ParserEngine engine;
+
+    public TestParser(final ParserEngine engine)
+    {
+        this.engine = engine;
+        this.parser = DefaultServiceContext.create(engine).parser();
+    }
+
+    @Test
+    public void testInterningFactorySharesRepeatedFragments()
+    {
+        final ImmutableElementFactory factory = ImmutableElementFactory.createInterning(1000);
+        final Parser interning = this.engine.create(factory);
+        final ImmutableElement element = interning.parse("<a><b><c x=\"1\">t</c></b><b><c x=\"1\">t</c></b></a>");
+        assertThat(element.children().get(0) == element.children().get(1), is(true));
+    }
 
 	@Test
     public void testParseSimpleXml() throws IOException
@@ -156,4 +202,147 @@ public class TestParser
         final ImmutableElement element = this.parser.parse(CommonData.withCDATASpecialChars.getInput());
         assertThat(element, valueIs("foo \n &\"'<>"));
     }
+
+    @Test
+    public void namespacePrefixes() throws Exception
+    {
+        final ImmutableElement element = this.parser.parse("<x:Foo xmlns:x=\"urn:x\" x:name=\"a\"/>");
+        assertThat(element, nameIs("x:Foo"));
+        assertThat(element, hasAttr("xmlns:x").withValue("urn:x"));
+        assertThat(element, hasAttr("x:name").withValue("a"));
+    }
+
+    @Test
+    public void streamRecords() throws Exception
+    {
+        final List<ImmutableElement> records = Lists.newArrayList();
+        this.parser.stream(
+                new StringReader("<feed><title>t</title><entry id=\"1\"><a>x</a></entry>text<entry id=\"2\"/><other><entry/></other></feed>"),
+                "/feed/entry",
+                new RecordHandler() {
+
+                    @Override
+                    public void onRecord(final ImmutableElement record)
+                    {
+                        records.add(record);
+                    }
+                });
+        assertThat(records.size(), is(2));
+        assertThat(records.get(0), hasAttr("id").withValue("1"));
+        assertThat(records.get(0).child("a"), valueIs("x"));
+        assertThat(records.get(1), hasAttr("id").withValue("2"));
+    }
+
+    @Test
+    public void streamRecordsWithWildcard() throws Exception
+    {
+        final List<ImmutableElement> records = Lists.newArrayList();
+        this.parser.stream(
+                new StringReader("<feed><a><entry/></a><b><entry/><c/></b></feed>"),
+                "/*/*/entry",
+                new RecordHandler() {
+
+                    @Override
+                    public void onRecord(final ImmutableElement record)
+                    {
+                        records.add(record);
+                    }
+                });
+        assertThat(records.size(), is(2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void streamRejectsPredicates() throws Exception
+    {
+        this.parser.stream(new StringReader("<feed/>"), "/feed/entry@id=1", new RecordHandler() {
+
+            @Override
+            public void onRecord(final ImmutableElement record)
+            {}
+        });
+    }
+
+    @Test
+    public void parseInputStreamDetectsEncoding() throws Exception
+    {
+        final byte[] bytes = "<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?><Foo a=\"\u00e6\">\u00f8</Foo>".getBytes(Charsets.ISO_8859_1);
+        final ImmutableElement element = this.parser.parse(new ByteArrayInputStream(bytes));
+        assertThat(element, valueIs("\u00f8"));
+        assertThat(element, hasAttr("a").withValue("\u00e6"));
+    }
+
+    @Test
+    public void parseByteBuffer() throws Exception
+    {
+        final ByteBuffer buffer = ByteBuffer.wrap("<Foo><Bar>\u0400</Bar></Foo>".getBytes(Charsets.UTF_8));
+        final ImmutableElement element = this.parser.parse(buffer);
+        assertThat(element.child("Bar"), valueIs("\u0400"));
+        assertThat(buffer.position(), is(0));
+    }
+
+    @Test
+    public void parseFile() throws Exception
+    {
+        final File file = this.tmpFolder.newFile();
+        Files.write("<Foo><Bar>\u0400</Bar></Foo>", file, Charsets.UTF_8);
+        final ImmutableElement element = this.parser.parse(file);
+        assertThat(element.child("Bar"), valueIs("\u0400"));
+    }
+
+    @Test
+    public void projectKeepsSelectedNodes() throws Exception
+    {
+        final String xml = "<Foo a=\"1\">x<Bar name=\"a\"><Baz>1</Baz></Bar><Bar name=\"b\"><Baz>2</Baz><Other/></Bar><Skip><Baz/></Skip></Foo>";
+        final ImmutableElement full = this.parser.parse(xml);
+        final ImmutableElement projected = this.parser.project("/Foo/Bar@name=b/Baz").parse(xml);
+
+        assertThat(projected.select().from("/Foo/Bar@name=b/Baz").one(), valueIs("2"));
+        assertThat(projected.select().from("/Foo/Bar@name=b/Baz").all().size(),
+                is(full.select().from("/Foo/Bar@name=b/Baz").all().size()));
+        assertThat(projected, hasAttr("a").withValue("1"));
+        assertThat(projected, valueIs("x"));
+        assertThat(projected.select().from("/Foo/Skip").all().isEmpty(), is(true));
+        assertThat(projected.select().from("/Foo/Bar/Other").all().isEmpty(), is(true));
+    }
+
+    @Test
+    public void projectKeepsContentBelowPath() throws Exception
+    {
+        final String xml = "<Foo><Bar><Baz><Deep>d</Deep></Baz></Bar><Qux/><Skip/></Foo>";
+        final ImmutableElement projected = this.parser.project("/Foo/Bar", "/Foo/*/").parse(xml);
+        assertThat(projected.select().from("/Foo/Bar/Baz/Deep").one(), valueIs("d"));
+        assertThat(projected.select().from("/Foo/Qux").all().size(), is(1));
+
+        final ImmutableElement narrow = this.parser.project("/Foo/Bar").parse(xml);
+        assertThat(narrow.children().size(), is(1));
+    }
+
+    @Test
+    public void whitespaceTrim() throws Exception
+    {
+        final ImmutableElement element = this.parser.parse("<Foo>\n  <Bar> a &amp; b </Bar>\n</Foo>");
+        assertThat(element.children().size(), is(1));
+        assertThat(element.child("Bar"), valueIs("a & b"));
+    }
+
+    @Test
+    public void whitespacePreserve() throws Exception
+    {
+        final ImmutableElement element = this.parser
+                .withWhitespacePolicy(WhitespacePolicy.PRESERVE)
+                .parse("<Foo>\n  <Bar> a &amp; b </Bar>\n</Foo>");
+        assertThat(element.children().size(), is(3));
+        assertThat(element.child("Bar"), valueIs(" a & b "));
+        assertThat(element, valueIs("\n  \n"));
+    }
+
+    @Test
+    public void whitespaceDropWhitespace() throws Exception
+    {
+        final ImmutableElement element = this.parser
+                .withWhitespacePolicy(WhitespacePolicy.DROP_WHITESPACE)
+                .parse("<Foo>\n  <Bar> a &amp; b </Bar>\n</Foo>");
+        assertThat(element.children().size(), is(1));
+        assertThat(element.child("Bar"), valueIs(" a & b "));
+    }
 }
@@ -19,23 +19,63 @@ import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javax.xml.stream.XMLStreamException;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
 
 import xml.entity.CommonData;
 import xml.entity.immutableelement.ImmutableElement;
-import xml.entity.serilalize.DefaultServiceContext;
+import xml.entity.immutableelement.ImmutableElementFactory;
 import xml.entity.serilalize.Serializer;
+import xml.entity.serilalize.Serializers;
 
 import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
+@RunWith(Parameterized.class)
 public class TestSerializer
 {
-    private final Serializer serializer = DefaultServiceContext.create().serializer();
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(4, new ThreadFactoryBuilder().setDaemon(true).build());
+
+    @Parameters
+    public static Collection<Object[]> parameters()
+    {
+        return Arrays.asList(new Object[][] {
+                { Serializers.xmlStreamWriter() },
+                { Serializers.utf8() },
+                { Serializers.cachingUtf8(1 << 20) },
+                { Serializers.parallelUtf8(EXECUTOR) } });
+    }
+
+    private final Serializer reference = Serializers.xmlStreamWriter();
+    private final ImmutableElementFactory factory = ImmutableElementFactory.create();
+    private final Serializer serializer;
+
+    public @Rule TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    public TestSerializer(final Serializer serializer)
+    {
+        this.serializer = serializer;
+    }
 
 	@Test public void testSingleElement()
 	{
@@ -94,4 +134,140 @@ public class TestSerializer
 		final String string = this.serializer.serialize(element).toString();
 		assertThat(string, is("<Foo><Bar/></Foo>"));
 	}
+
+    @Test
+    public void testEscaping() throws Exception
+    {
+        final String value = "a<b>c&d\"e'f\tg\nh\ri";
+        final ImmutableElement element = this.factory.createNode("x", ImmutableList.of(
+                this.factory.createAttr("k", value),
+                this.factory.createText(value),
+                this.factory.createLeaf("y")));
+        final String string = this.serializer.serialize(element).toString();
+        assertThat(string, is("<x k=\"a&lt;b&gt;c&amp;d&quot;e'f\tg\nh\ri\">a&lt;b&gt;c&amp;d\"e'f\tg\nh\ri<y/></x>"));
+        assertSameBytes(element, Charsets.UTF_8);
+    }
+
+    @Test
+    public void testEmptyText()
+    {
+        final ImmutableElement element = this.factory.createNode("Foo", ImmutableList.of(this.factory.createText("")));
+        assertThat(this.serializer.serialize(element).toString(), is("<Foo></Foo>"));
+    }
+
+    @Test
+    public void testNonAscii() throws Exception
+    {
+        final String value = "\u00e4\u00df\u20ac\ud83d\ude00|\ud83d|\ude00";
+        final ImmutableElement element = this.factory.createNode("\u00e4", ImmutableList.of(
+                this.factory.createAttr("\u20ac", value),
+                this.factory.createText(value)));
+        assertSameBytes(element, Charsets.UTF_8);
+        assertSameBytes(element, Charsets.UTF_16);
+        assertSameBytes(element, Charsets.ISO_8859_1);
+    }
+
+    @Test
+    public void testUnpairedSurrogateInName() throws Exception
+    {
+        final ImmutableElement element = this.factory.createNode("a\ud83d", ImmutableList.of(
+                this.factory.createAttr("\ude00b", "c")));
+        final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        this.serializer.serialize(element).toStream(actual, Charsets.UTF_8);
+        assertThat(new String(actual.toByteArray(), Charsets.UTF_8), is("<a? ?b=\"c\"/>"));
+    }
+
+    @Test
+    public void testLargerThanBuffer() throws Exception
+    {
+        assertSameBytes(largeElement(), Charsets.UTF_8);
+    }
+
+    @Test
+    public void testReserializeAfterUpdate() throws Exception
+    {
+        final ImmutableList.Builder<ImmutableElement> children = ImmutableList.builder();
+        for(int i = 0; i < 20; i++)
+        {
+            children.add(this.factory.createNode("Bar", ImmutableList.of(
+                    this.factory.createAttr("i", Integer.toString(i)),
+                    this.factory.createText(Strings.repeat("\u00e4<", 100 + i)))));
+        }
+        final ImmutableList<ImmutableElement> original = children.build();
+        final ImmutableElement element = this.factory.createNode("Foo", original);
+        assertSameBytes(element, Charsets.UTF_8);
+        assertSameBytes(element, Charsets.UTF_8);
+
+        final ImmutableList<ImmutableElement> changed = ImmutableList.<ImmutableElement> builder()
+                .addAll(original.subList(0, 10))
+                .add(this.factory.createNode("Bar", ImmutableList.of(this.factory.createText("changed"))))
+                .addAll(original.subList(11, 20))
+                .build();
+        final ImmutableElement updated = this.factory.createNode("Foo", changed);
+        assertSameBytes(updated, Charsets.UTF_8);
+        assertSameBytes(original.get(3), Charsets.UTF_8);
+        assertThat(this.serializer.serialize(updated).toString(), is(this.reference.serialize(updated).toString()));
+    }
+
+    @Test
+    public void testToChannel() throws Exception
+    {
+        final ImmutableElement element = largeElement();
+        final File file = this.tmpFolder.newFile();
+        final FileOutputStream stream = new FileOutputStream(file);
+        try
+        {
+            this.serializer.serialize(element).toChannel(stream.getChannel());
+        }
+        finally
+        {
+            stream.close();
+        }
+        assertThat(Files.toByteArray(file), is(referenceBytes(element)));
+    }
+
+    @Test
+    public void testToByteBuffers() throws Exception
+    {
+        final ImmutableElement element = largeElement();
+        final ImmutableList<ByteBuffer> buffers = this.serializer.serialize(element).toByteBuffers();
+        assertThat(buffers.size() > 1, is(true));
+        final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        for(final ByteBuffer buffer : buffers)
+        {
+            assertThat(buffer.isDirect(), is(true));
+            final byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            actual.write(bytes);
+        }
+        assertThat(actual.toByteArray(), is(referenceBytes(element)));
+    }
+
+    private ImmutableElement largeElement()
+    {
+        final ImmutableList.Builder<ImmutableElement> children = ImmutableList.builder();
+        for(int i = 0; i < 2000; i++)
+        {
+            children.add(this.factory.createNode("Bar", ImmutableList.of(
+                    this.factory.createAttr("i", Integer.toString(i)),
+                    this.factory.createText(Strings.repeat("\u00e4&", i % 50)))));
+        }
+        return this.factory.createNode("Foo", children.build());
+    }
+
+    private byte[] referenceBytes(final ImmutableElement element) throws XMLStreamException, IOException
+    {
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        this.reference.serialize(element).toStream(expected, Charsets.UTF_8);
+        return expected.toByteArray();
+    }
+
+    private void assertSameBytes(final ImmutableElement element, final Charset charset) throws XMLStreamException, IOException
+    {
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        this.reference.serialize(element).toStream(expected, charset);
+        final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        this.serializer.serialize(element).toStream(actual, charset);
+        assertThat(actual.toByteArray(), is(expected.toByteArray()));
+    }
 }
@@ -75,4 +75,17 @@ public class TestRemoveNamespacePrefixes
 
         assertThat(transformed, nameIs("root"));
     }
+
+    @Test
+    public void removeOnNestedElements()
+    {
+        final Element node = factory.createNode("a:root");
+        node.child("b:child").attribute("c:attr").value("1");
+        final ImmutableElement element = node.immutableCopy();
+
+        final ImmutableElement transformed = tranformation.apply(element);
+
+        assertThat(transformed, nameIs("root"));
+        assertThat(transformed.child("child"), hasAttr("attr").withValue("1"));
+    }
 }